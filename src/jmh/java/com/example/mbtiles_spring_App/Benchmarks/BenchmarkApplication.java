@@ -0,0 +1,30 @@
+package com.example.mbtiles_spring_App.Benchmarks;
+
+import com.example.mbtiles_spring_App.MbtilesRestApiApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(Path storageDir, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "mbtiles.map.storage.dir=" + storageDir.toAbsolutePath(),
+                "server.port=0",
+                "mbtiles.watch.enabled=false",
+                "mbtiles.startup.preload-metadata=false",
+                "mbtiles.prewarm.enabled=false",
+                "logging.level.root=WARN",
+                "spring.main.banner-mode=off"));
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(MbtilesRestApiApplication.class)
+                .properties(all.toArray(String[]::new))
+                .run();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mbtiles_spring_App.Benchmarks;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+
+public final class BenchmarkData {
+
+    public static final long SEED = 42L;
+
+    private BenchmarkData() {
+    }
+
+    public static List<SyntheticMbtiles> strips(int mapCount, int maxZoom, int tileSize, double coverage) {
+        return SyntheticMbtiles.strips(mapCount, maxZoom, tileSize, coverage, SEED);
+    }
+
+    public static Path directory(List<SyntheticMbtiles> maps, String key) throws IOException, SQLException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "mbtiles-benchmarks", key);
+        Path done = dir.resolve(".complete");
+        if (Files.exists(done)) {
+            return dir;
+        }
+        Files.createDirectories(dir);
+        for (int i = 0; i < maps.size(); i++) {
+            maps.get(i).write(dir.resolve(fileName(i)));
+        }
+        Files.createFile(done);
+        return dir;
+    }
+
+    public static String fileName(int index) {
+        return "strip" + index + "!" + (1_000_000_000_000L + index) + ".mbtiles";
+    }
+
+    public static String mapName(int index) {
+        return "strip" + index + "!" + (1_000_000_000_000L + index);
+    }
+}
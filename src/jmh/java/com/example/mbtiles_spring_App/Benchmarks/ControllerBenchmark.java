@@ -0,0 +1,77 @@
+package com.example.mbtiles_spring_App.Benchmarks;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ControllerBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    @Param({"9"})
+    public int maxZoom;
+
+    @Param({"2048"})
+    public int tileSize;
+
+    @Param({"false", "true"})
+    public boolean tileCache;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private int[][] coordinates;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<SyntheticMbtiles> maps = BenchmarkData.strips(1, maxZoom, tileSize, 0.5);
+        Path dir = BenchmarkData.directory(maps, "strips-1-" + maxZoom + "-" + tileSize);
+        context = BenchmarkApplication.start(dir, "mbtiles.tile-cache.enabled=" + tileCache);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        coordinates = maps.get(0).sample(SAMPLES, BenchmarkData.SEED).toArray(int[][]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int[] next(int[][] coordinates) {
+            int[] c = coordinates[next];
+            next = next + 1 == coordinates.length ? 0 : next + 1;
+            return c;
+        }
+    }
+
+    @Benchmark
+    public MvcResult namedTile(Cursor cursor) throws Exception {
+        int[] c = cursor.next(coordinates);
+        return mockMvc.perform(get("/api/v1/mbtiles/{z}/{x}/{y}", c[0], c[1], c[2])
+                        .param("mapName", BenchmarkData.mapName(0)))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult logicalNameTile(Cursor cursor) throws Exception {
+        int[] c = cursor.next(coordinates);
+        return mockMvc.perform(get("/api/v1/mbtiles/{z}/{x}/{y}", c[0], c[1], c[2])
+                        .param("mapName", "strip0"))
+                .andReturn();
+    }
+}
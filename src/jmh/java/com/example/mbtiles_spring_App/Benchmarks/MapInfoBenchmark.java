@@ -0,0 +1,53 @@
+package com.example.mbtiles_spring_App.Benchmarks;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Repositories.MapDescriptorFactory;
+import com.example.mbtiles_spring_App.Services.MbtilesService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapInfoBenchmark {
+
+    @Param({"6", "10"})
+    public int maxZoom;
+
+    private ConfigurableApplicationContext context;
+    private MapDescriptorFactory descriptorFactory;
+    private MbtilesService service;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<SyntheticMbtiles> maps = BenchmarkData.strips(1, maxZoom, 512, 0.5);
+        Path dir = BenchmarkData.directory(maps, "info-" + maxZoom);
+        file = dir.resolve(BenchmarkData.fileName(0)).toFile();
+        context = BenchmarkApplication.start(dir);
+        descriptorFactory = context.getBean(MapDescriptorFactory.class);
+        service = context.getBean(MbtilesService.class);
+        service.getMapInfo(BenchmarkData.mapName(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MapDescriptor buildDescriptor() throws Exception {
+        return descriptorFactory.build(BenchmarkData.mapName(0), file, 1L);
+    }
+
+    @Benchmark
+    public byte[] loadedInfo() throws Exception {
+        return service.getMapInfo(BenchmarkData.mapName(0)).getInfoJson();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.mbtiles_spring_App.Benchmarks;
+
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TileLookupBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    @Param({"1", "8", "32"})
+    public int mapCount;
+
+    @Param({"9"})
+    public int maxZoom;
+
+    @Param({"2048"})
+    public int tileSize;
+
+    @Param({"false", "true"})
+    public boolean tileCache;
+
+    private ConfigurableApplicationContext context;
+    private MbtilesRepository repository;
+    private int[][] named;
+    private int[][] anywhere;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<SyntheticMbtiles> maps = BenchmarkData.strips(mapCount, maxZoom, tileSize, 0.5);
+        Path dir = BenchmarkData.directory(maps, "strips-" + mapCount + "-" + maxZoom + "-" + tileSize);
+        context = BenchmarkApplication.start(dir, "mbtiles.tile-cache.enabled=" + tileCache);
+        repository = context.getBean(MbtilesRepository.class);
+
+        named = maps.get(0).sample(SAMPLES, BenchmarkData.SEED).toArray(int[][]::new);
+        List<int[]> all = new ArrayList<>();
+        for (SyntheticMbtiles map : maps) {
+            all.addAll(map.sample(SAMPLES / mapCount + 1, BenchmarkData.SEED));
+        }
+        anywhere = all.toArray(int[][]::new);
+        for (int[] c : anywhere) {
+            repository.getMbtiles(c[0], c[1], c[2]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int[] next(int[][] coordinates) {
+            int[] c = coordinates[next];
+            next = next + 1 == coordinates.length ? 0 : next + 1;
+            return c;
+        }
+    }
+
+    @Benchmark
+    public Optional<TileResponse> namedLookup(Cursor cursor) throws Exception {
+        int[] c = cursor.next(named);
+        return repository.getMbtiles(BenchmarkData.mapName(0), c[0], c[1], c[2]);
+    }
+
+    @Benchmark
+    public Optional<TileResponse> maplessLookup(Cursor cursor) throws Exception {
+        int[] c = cursor.next(anywhere);
+        return repository.getMbtiles(c[0], c[1], c[2]);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.SqliteReadProperties;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Чтение тайла из SQLite через пул соединений против чтения из скомпилированного архива тайлов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TileArchiveBenchmark {
+
+    @Param({"8"})
+    public int maxZoom;
+
+    @Param({"8192"})
+    public int tileSize;
+
+    private Path file;
+    private TileReadPool pool;
+    private TileArchive archive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("archive-benchmark", ".mbtiles");
+        Files.delete(file);
+        SyntheticMbtiles.write(file, maxZoom, tileSize, 42L);
+        pool = new TileReadPool(file.toFile(), new SqliteReadProperties(8, 268435456L, -8192, true, 5000, 1024, 0), false, null);
+        archive = TileArchive.compile(file.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+        TileArchive.deleteSidecar(file.toFile());
+        Files.deleteIfExists(file);
+    }
+
+    @State(Scope.Thread)
+    public static class Coordinates {
+        private static final AtomicLong SEEDS = new AtomicLong(42L);
+        private final SplittableRandom random = new SplittableRandom(SEEDS.getAndIncrement());
+        int z;
+        int x;
+        int y;
+
+        void next(int maxZoom) {
+            z = random.nextInt(maxZoom + 1);
+            x = random.nextInt(1 << z);
+            y = random.nextInt(1 << z);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public StoredTile sqlite_1(Coordinates c) throws Exception {
+        c.next(maxZoom);
+        return pool.readTile(c.z, c.x, c.y);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public StoredTile sqlite_8(Coordinates c) throws Exception {
+        c.next(maxZoom);
+        return pool.readTile(c.z, c.x, c.y);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public StoredTile archive_1(Coordinates c) {
+        c.next(maxZoom);
+        return archive.readTile(c.z, c.x, c.y);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public StoredTile archive_8(Coordinates c) {
+        c.next(maxZoom);
+        return archive.readTile(c.z, c.x, c.y);
+    }
+}
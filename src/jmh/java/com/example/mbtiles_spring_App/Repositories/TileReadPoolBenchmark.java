@@ -0,0 +1,111 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Configuration.SqliteReadProperties;
+import org.imintel.mbtiles4j.MBTilesReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TileReadPoolBenchmark {
+
+    @Param({"4", "8"})
+    public int poolSize;
+
+    @Param({"7"})
+    public int maxZoom;
+
+    @Param({"8192"})
+    public int tileSize;
+
+    private Path file;
+    private TileReadPool pool;
+    private MBTilesReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("read-pool-benchmark", ".mbtiles");
+        Files.delete(file);
+        SyntheticMbtiles.write(file, maxZoom, tileSize, 42L);
+        pool = new TileReadPool(file.toFile(), new SqliteReadProperties(poolSize, 268435456L, -8192, true, 5000, 1024, 0), false, null);
+        reader = new MBTilesReader(file.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+        reader.close();
+        Files.deleteIfExists(file);
+    }
+
+    @State(Scope.Thread)
+    public static class Coordinates {
+        private static final AtomicLong SEEDS = new AtomicLong(42L);
+        private final SplittableRandom random = new SplittableRandom(SEEDS.getAndIncrement());
+        int z;
+        int x;
+        int y;
+
+        void next(int maxZoom) {
+            z = random.nextInt(maxZoom + 1);
+            x = random.nextInt(1 << z);
+            y = random.nextInt(1 << z);
+        }
+    }
+
+    private StoredTile pooled(Coordinates c) throws Exception {
+        c.next(maxZoom);
+        return pool.readTile(c.z, c.x, c.y);
+    }
+
+    private byte[] single(Coordinates c) throws Exception {
+        c.next(maxZoom);
+        try (InputStream is = reader.getTile(c.z, c.x, c.y).getData()) {
+            return is.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public StoredTile pooled_1(Coordinates c) throws Exception {
+        return pooled(c);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public StoredTile pooled_4(Coordinates c) throws Exception {
+        return pooled(c);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public StoredTile pooled_8(Coordinates c) throws Exception {
+        return pooled(c);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] singleReader_1(Coordinates c) throws Exception {
+        return single(c);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] singleReader_4(Coordinates c) throws Exception {
+        return single(c);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] singleReader_8(Coordinates c) throws Exception {
+        return single(c);
+    }
+}
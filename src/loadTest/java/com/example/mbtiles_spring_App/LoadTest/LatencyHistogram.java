@@ -0,0 +1,76 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+/**
+ * Лог-линейная гистограмма задержек в микросекундах: 128 корзин на каждую степень двойки,
+ * то есть погрешность квантилей не больше 1%. Не потокобезопасна, у каждого клиента своя.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 128;
+    private static final int SUB_BITS = 7;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long total;
+    private long max;
+    private double sum;
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts[index(micros)]++;
+        total++;
+        sum += micros;
+        max = Math.max(max, micros);
+    }
+
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    double meanMicros() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    long maxMicros() {
+        return max;
+    }
+
+    long percentileMicros(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Замкнутый цикл нагрузки: каждый клиент отправляет следующий запрос сразу после ответа на предыдущий.
+ */
+final class LoadDriver {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final URI base;
+    private final int concurrency;
+    private final IntFunction<Workload> workloads;
+    private final long seed;
+
+    LoadDriver(URI base, int concurrency, IntFunction<Workload> workloads, long seed) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.base = base;
+        this.concurrency = concurrency;
+        this.workloads = workloads;
+        this.seed = seed;
+    }
+
+    LoadStats run(Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Thread> threads = new ArrayList<>(concurrency);
+        List<LoadStats> results = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            LoadStats stats = new LoadStats();
+            results.add(stats);
+            Workload workload = workloads.apply(i);
+            SplittableRandom random = new SplittableRandom(seed + i);
+            Thread thread = new Thread(() -> drive(workload, random, stats, deadline), "load-client-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        LoadStats merged = new LoadStats();
+        for (int i = 0; i < threads.size(); i++) {
+            threads.get(i).join();
+            merged.merge(results.get(i));
+        }
+        return merged;
+    }
+
+    private void drive(Workload workload, SplittableRandom random, LoadStats stats, long deadline) {
+        while (System.nanoTime() < deadline) {
+            LoadRequest request = workload.next(random);
+            long started = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = client.send(build(request), HttpResponse.BodyHandlers.ofByteArray());
+                stats.record(request.kind(), response.statusCode(), response.body().length, System.nanoTime() - started);
+                workload.completed(request, response.statusCode());
+            } catch (IOException e) {
+                stats.failure(request.kind(), e, System.nanoTime() - started);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private HttpRequest build(LoadRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(request.path())).timeout(REQUEST_TIMEOUT);
+        if (request.body() == null) {
+            return builder.method(request.method(), HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return builder.header("Content-Type", request.contentType())
+                .method(request.method(), HttpRequest.BodyPublishers.ofByteArray(request.body()))
+                .build();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadTestOptions options;
+    private final String threads;
+    private final LoadStats stats;
+    private final Duration elapsed;
+    private final Map<String, Object> server;
+
+    LoadReport(LoadTestOptions options, String threads, LoadStats stats, Duration elapsed, Map<String, Object> server) {
+        this.options = options;
+        this.threads = threads;
+        this.stats = stats;
+        this.elapsed = elapsed;
+        this.server = server;
+    }
+
+    static void compare(List<LoadReport> reports, PrintStream out) {
+        out.printf("%n%-10s %10s %8s %9s %9s %9s %8s%n", "threads", "req/s", "errors", "p50,ms", "p99,ms", "p99.9,ms", "pinned");
+        for (LoadReport report : reports) {
+            LoadStats.KindStats total = report.stats.total();
+            out.printf("%-10s %10.1f %7.2f%% %9.2f %9.2f %9.2f %8s%n",
+                    report.threads, report.throughput(total.latency.count()), errorRate(total) * 100,
+                    total.latency.percentileMicros(50) / 1000.0,
+                    total.latency.percentileMicros(99) / 1000.0,
+                    total.latency.percentileMicros(99.9) / 1000.0,
+                    report.server.getOrDefault("pinnedEvents", "-"));
+        }
+    }
+
+    void print(PrintStream out) {
+        out.printf("%nworkload=%s concurrency=%d threads=%s duration=%.1fs%n",
+                options.workload(), options.concurrency(), threads != null ? threads : "-", elapsed.toMillis() / 1000.0);
+        out.printf("%-8s %10s %10s %8s %9s %9s %9s %9s %9s %9s%n",
+                "kind", "requests", "req/s", "errors", "mean,ms", "p50,ms", "p90,ms", "p99,ms", "p99.9,ms", "max,ms");
+        stats.kinds().forEach((kind, kindStats) -> printRow(out, kind, kindStats));
+        printRow(out, "total", stats.total());
+        stats.kinds().forEach((kind, kindStats) -> out.printf("%-8s statuses %s%n", kind, kindStats.statuses));
+        if (!server.isEmpty()) {
+            out.printf("server   %s%n", server);
+        }
+    }
+
+    void write(Path file) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("workload", options.workload());
+        report.put("concurrency", options.concurrency());
+        report.put("threads", threads);
+        report.put("durationMs", elapsed.toMillis());
+        report.put("total", summary(stats.total()));
+        Map<String, Object> kinds = new LinkedHashMap<>();
+        stats.kinds().forEach((kind, kindStats) -> kinds.put(kind, summary(kindStats)));
+        report.put("kinds", kinds);
+        report.put("server", server);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+    }
+
+    private void printRow(PrintStream out, String kind, LoadStats.KindStats kindStats) {
+        LatencyHistogram latency = kindStats.latency;
+        out.printf("%-8s %10d %10.1f %7.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                kind, latency.count(), throughput(latency.count()), errorRate(kindStats) * 100,
+                latency.meanMicros() / 1000.0,
+                latency.percentileMicros(PERCENTILES[0]) / 1000.0,
+                latency.percentileMicros(PERCENTILES[1]) / 1000.0,
+                latency.percentileMicros(PERCENTILES[2]) / 1000.0,
+                latency.percentileMicros(PERCENTILES[3]) / 1000.0,
+                latency.maxMicros() / 1000.0);
+    }
+
+    private Map<String, Object> summary(LoadStats.KindStats kindStats) {
+        LatencyHistogram latency = kindStats.latency;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", latency.count());
+        summary.put("throughput", throughput(latency.count()));
+        summary.put("errors", kindStats.errors);
+        summary.put("errorRate", errorRate(kindStats));
+        summary.put("bytes", kindStats.bytes);
+        summary.put("meanMicros", latency.meanMicros());
+        Map<String, Long> percentiles = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            percentiles.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile)),
+                    latency.percentileMicros(percentile));
+        }
+        summary.put("latencyMicros", percentiles);
+        summary.put("maxMicros", latency.maxMicros());
+        summary.put("statuses", kindStats.statuses);
+        return summary;
+    }
+
+    private double throughput(long requests) {
+        return elapsed.isZero() ? 0 : requests * 1000.0 / elapsed.toMillis();
+    }
+
+    private static double errorRate(LoadStats.KindStats kindStats) {
+        long requests = kindStats.latency.count();
+        return requests == 0 ? 0 : (double) kindStats.errors / requests;
+    }
+}
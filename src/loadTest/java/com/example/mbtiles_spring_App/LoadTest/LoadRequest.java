@@ -0,0 +1,8 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+public record LoadRequest(String kind, String method, String path, byte[] body, String contentType) {
+
+    public static LoadRequest get(String kind, String path) {
+        return new LoadRequest(kind, "GET", path, null, null);
+    }
+}
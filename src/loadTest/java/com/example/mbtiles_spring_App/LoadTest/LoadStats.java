@@ -0,0 +1,55 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+final class LoadStats {
+
+    private final Map<String, KindStats> kinds = new TreeMap<>();
+
+    void record(String kind, int status, long bytes, long nanos) {
+        KindStats stats = kinds.computeIfAbsent(kind, name -> new KindStats());
+        stats.latency.record(nanos);
+        stats.statuses.merge(String.valueOf(status), 1L, Long::sum);
+        stats.bytes += bytes;
+        if (status >= 400) {
+            stats.errors++;
+        }
+    }
+
+    void failure(String kind, Throwable error, long nanos) {
+        KindStats stats = kinds.computeIfAbsent(kind, name -> new KindStats());
+        stats.latency.record(nanos);
+        stats.statuses.merge(error.getClass().getSimpleName(), 1L, Long::sum);
+        stats.errors++;
+    }
+
+    void merge(LoadStats other) {
+        other.kinds.forEach((kind, stats) -> kinds.computeIfAbsent(kind, name -> new KindStats()).merge(stats));
+    }
+
+    Map<String, KindStats> kinds() {
+        return kinds;
+    }
+
+    KindStats total() {
+        KindStats total = new KindStats();
+        kinds.values().forEach(total::merge);
+        return total;
+    }
+
+    static final class KindStats {
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<String, Long> statuses = new TreeMap<>();
+        long bytes;
+        long errors;
+
+        private void merge(KindStats other) {
+            latency.merge(other.latency);
+            other.statuses.forEach((status, count) -> statuses.merge(status, count, Long::sum));
+            bytes += other.bytes;
+            errors += other.errors;
+        }
+    }
+}
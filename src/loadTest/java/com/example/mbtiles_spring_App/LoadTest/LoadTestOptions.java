@@ -0,0 +1,62 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+public record LoadTestOptions(String workload,
+                              String target,
+                              String threads,
+                              Path storage,
+                              Path accessLog,
+                              Path report,
+                              int concurrency,
+                              Duration warmup,
+                              Duration duration,
+                              int maps,
+                              int maxZoom,
+                              int tileSize,
+                              double coverage,
+                              double zipfExponent,
+                              int hotZoom,
+                              double maplessShare,
+                              double uploadShare,
+                              double deleteShare,
+                              long seed,
+                              String[] serverProperties) {
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Ожидался аргумент вида --name=value: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(separator < 0 ? arg.substring(2) : arg.substring(2, separator),
+                    separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+        int maxZoom = Integer.parseInt(values.getOrDefault("max-zoom", "10"));
+        return new LoadTestOptions(
+                values.getOrDefault("workload", "zipf"),
+                values.get("target"),
+                values.get("threads"),
+                values.containsKey("storage") ? Path.of(values.get("storage")) : null,
+                values.containsKey("access-log") ? Path.of(values.get("access-log")) : null,
+                Path.of(values.getOrDefault("report", "build/reports/loadtest/report.json")),
+                Integer.parseInt(values.getOrDefault("concurrency", "64")),
+                Duration.parse("PT" + values.getOrDefault("warmup", "10s").toUpperCase()),
+                Duration.parse("PT" + values.getOrDefault("duration", "60s").toUpperCase()),
+                Integer.parseInt(values.getOrDefault("maps", "4")),
+                maxZoom,
+                Integer.parseInt(values.getOrDefault("tile-size", "8192")),
+                Double.parseDouble(values.getOrDefault("coverage", "0.8")),
+                Double.parseDouble(values.getOrDefault("zipf", "1.1")),
+                Integer.parseInt(values.getOrDefault("hot-zoom", String.valueOf(Math.max(0, maxZoom - 2)))),
+                Double.parseDouble(values.getOrDefault("mapless", "0.0")),
+                Double.parseDouble(values.getOrDefault("uploads", "0.01")),
+                Double.parseDouble(values.getOrDefault("deletes", "0.005")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                values.getOrDefault("server", "").isBlank() ? new String[0] : values.get("server").split(","));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.MbtilesRestApiApplication;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Сквозной нагрузочный тест: генерирует набор синтетических карт, поднимает приложение на случайном порту
+ * (или нагружает внешний экземпляр из {@code --target}) и гоняет выбранный сценарий:
+ * {@code zipf}, {@code panning}, {@code mixed} или {@code replay} с {@code --access-log}.
+ * {@code --threads=platform|virtual|both} запускает сервер с нужным режимом потоков Tomcat; {@code both}
+ * прогоняет сценарий дважды и печатает сравнение.
+ * Запуск: {@code ./gradlew loadTest -PloadTestArgs="--workload=panning --concurrency=2000 --threads=both"}.
+ */
+public final class LoadTestRunner {
+
+    private static final int UPLOAD_MAX_ZOOM = 4;
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        List<SyntheticMbtiles> maps = SyntheticMbtiles.strips(options.maps(), options.maxZoom(),
+                options.tileSize(), options.coverage(), options.seed());
+
+        if (options.target() != null) {
+            run(options, maps, URI.create(options.target()), null, null);
+            return;
+        }
+        List<LoadReport> reports = new ArrayList<>();
+        for (String threads : threadModes(options)) {
+            List<String> properties = new ArrayList<>(List.of(options.serverProperties()));
+            if (threads != null) {
+                properties.add("spring.threads.virtual.enabled=" + "virtual".equals(threads));
+            }
+            Path storage = prepareStorage(options, maps);
+            ConfigurableApplicationContext context = start(storage, properties.toArray(String[]::new));
+            try {
+                URI base = URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort());
+                System.out.printf("Приложение запущено на %s (потоки: %s), карты в %s%n",
+                        base, threads != null ? threads : "по конфигурации", storage);
+                reports.add(run(options, maps, base, threads, context.getBean(MeterRegistry.class)));
+            } finally {
+                context.close();
+            }
+        }
+        if (reports.size() > 1) {
+            LoadReport.compare(reports, System.out);
+        }
+    }
+
+    private static LoadReport run(LoadTestOptions options, List<SyntheticMbtiles> maps, URI base,
+                                  String threads, MeterRegistry serverMetrics) throws Exception {
+        LoadDriver driver = new LoadDriver(base, options.concurrency(), workloads(options, maps), options.seed());
+        if (!options.warmup().isZero()) {
+            driver.run(options.warmup());
+        }
+        long started = System.nanoTime();
+        LoadStats stats = driver.run(options.duration());
+        LoadReport report = new LoadReport(options, threads, stats, Duration.ofNanos(System.nanoTime() - started),
+                serverStats(serverMetrics));
+        Path file = threads == null ? options.report() : suffixed(options.report(), threads);
+        report.print(System.out);
+        report.write(file);
+        System.out.printf("Отчёт сохранён в %s%n", file.toAbsolutePath());
+        return report;
+    }
+
+    private static List<String> threadModes(LoadTestOptions options) {
+        if (options.threads() == null) {
+            return Collections.singletonList(null);
+        }
+        return switch (options.threads()) {
+            case "platform", "virtual" -> List.of(options.threads());
+            case "both" -> List.of("platform", "virtual");
+            default -> throw new IllegalArgumentException("Неизвестный режим потоков: " + options.threads());
+        };
+    }
+
+    // Счётчики сервера, которые не видны по HTTP-ответам: закрепления виртуальных потоков, открытые читатели, дедупликация кэша.
+    private static Map<String, Object> serverStats(MeterRegistry registry) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (registry == null) {
+            return stats;
+        }
+        Collection<Timer> pinned = registry.find("mbtiles.virtual.pinned").timers();
+        stats.put("pinnedEvents", pinned.stream().mapToLong(Timer::count).sum());
+        stats.put("pinnedMillis", pinned.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS)).sum());
+        Map<String, Long> sites = new TreeMap<>();
+        pinned.forEach(timer -> sites.put(timer.getId().getTag("site"), timer.count()));
+        stats.put("pinnedSites", sites);
+        Gauge readers = registry.find("mbtiles.readers.open").gauge();
+        if (readers != null) {
+            stats.put("openReaders", (long) readers.value());
+        }
+        Gauge dedup = registry.find("mbtiles.tile.cache.dedup.ratio").gauge();
+        if (dedup != null) {
+            stats.put("cacheDedupRatio", dedup.value());
+        }
+        return stats;
+    }
+
+    private static Path suffixed(Path report, String suffix) {
+        String name = report.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return report.resolveSibling(dot < 0 ? name + "-" + suffix : name.substring(0, dot) + "-" + suffix + name.substring(dot));
+    }
+
+    private static IntFunction<Workload> workloads(LoadTestOptions options, List<SyntheticMbtiles> maps)
+            throws IOException, SQLException {
+        TileSpace space = new TileSpace(maps, options.maplessShare());
+        return switch (options.workload()) {
+            case "zipf" -> {
+                ZipfWorkload zipf = new ZipfWorkload(space, options.hotZoom(), options.zipfExponent());
+                yield worker -> zipf;
+            }
+            case "panning" -> worker -> new PanningWorkload(space, options.hotZoom());
+            case "mixed" -> {
+                ZipfWorkload zipf = new ZipfWorkload(space, options.hotZoom(), options.zipfExponent());
+                byte[] body = MixedWorkload.multipart(Files.readAllBytes(uploadFile(options)));
+                yield worker -> new MixedWorkload(zipf, body, options.uploadShare(), options.deleteShare(), worker);
+            }
+            case "replay" -> {
+                if (options.accessLog() == null) {
+                    throw new IllegalArgumentException("Для сценария replay нужен --access-log");
+                }
+                List<String> paths = ReplayWorkload.read(options.accessLog());
+                yield worker -> new ReplayWorkload(paths, worker, options.concurrency());
+            }
+            default -> throw new IllegalArgumentException("Неизвестный сценарий: " + options.workload());
+        };
+    }
+
+    private static Path prepareStorage(LoadTestOptions options, List<SyntheticMbtiles> maps)
+            throws IOException, SQLException {
+        Path generated = cacheDir(options).resolve("maps");
+        Path done = generated.resolve(".complete");
+        if (!Files.exists(done)) {
+            Files.createDirectories(generated);
+            for (SyntheticMbtiles map : maps) {
+                map.write(generated.resolve(map.getName() + ".mbtiles"));
+            }
+            Files.createFile(done);
+        }
+        Path storage = options.storage() != null
+                ? Files.createDirectories(options.storage())
+                : Files.createTempDirectory("mbtiles-loadtest");
+        for (SyntheticMbtiles map : maps) {
+            Path source = generated.resolve(map.getName() + ".mbtiles");
+            Path target = storage.resolve(source.getFileName());
+            if (Files.exists(target)) {
+                continue;
+            }
+            try {
+                Files.createLink(target, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source, target);
+            }
+        }
+        return storage;
+    }
+
+    private static Path uploadFile(LoadTestOptions options) throws IOException, SQLException {
+        Path file = cacheDir(options).resolve("upload.mbtiles");
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            SyntheticMbtiles.builder()
+                    .name("loadtest-upload")
+                    .maxZoom(UPLOAD_MAX_ZOOM)
+                    .tileSize(options.tileSize())
+                    .seed(options.seed())
+                    .write(file);
+        }
+        return file;
+    }
+
+    private static Path cacheDir(LoadTestOptions options) {
+        String key = options.maps() + "x" + options.maxZoom() + "-" + options.tileSize()
+                + "-" + options.coverage() + "-" + options.seed();
+        return Paths.get(System.getProperty("java.io.tmpdir"), "mbtiles-loadtest", key);
+    }
+
+    private static ConfigurableApplicationContext start(Path storage, String[] properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "mbtiles.map.storage.dir=" + storage.toAbsolutePath(),
+                "server.port=0",
+                "logging.level.root=WARN",
+                "spring.main.banner-mode=off"));
+        all.addAll(List.of(properties));
+        // Аргументами командной строки, а не properties(): те лишь значения по умолчанию и проигрывают application.properties
+        return new SpringApplicationBuilder(MbtilesRestApiApplication.class)
+                .run(all.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+}
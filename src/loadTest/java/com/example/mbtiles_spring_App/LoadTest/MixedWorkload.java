@@ -0,0 +1,75 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * Чтение тайлов вперемешку с загрузкой и удалением карт: проверяет, как перезагрузка реестра
+ * и инвалидация кэша влияют на задержки чтения.
+ */
+final class MixedWorkload implements Workload {
+
+    private static final String BOUNDARY = "mbtiles-load-test-boundary";
+    private static final String UPLOAD_PATH = "/api/v1/mbtiles/upload?mapName=";
+    private static final String DELETE_PATH = "/api/v1/mbtiles?mapName=";
+
+    private final Workload reads;
+    private final byte[] uploadBody;
+    private final double uploadShare;
+    private final double deleteShare;
+    private final String prefix;
+    private final Deque<String> uploaded = new ArrayDeque<>();
+    private int uploads;
+
+    MixedWorkload(Workload reads, byte[] uploadBody, double uploadShare, double deleteShare, int worker) {
+        this.reads = reads;
+        this.uploadBody = uploadBody;
+        this.uploadShare = uploadShare;
+        this.deleteShare = deleteShare;
+        this.prefix = "loadtest-" + worker + "-";
+    }
+
+    static byte[] multipart(byte[] file) {
+        byte[] head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"loadtest.mbtiles\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new byte[head.length + file.length + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(file, 0, body, head.length, file.length);
+        System.arraycopy(tail, 0, body, head.length + file.length, tail.length);
+        return body;
+    }
+
+    @Override
+    public LoadRequest next(SplittableRandom random) {
+        double roll = random.nextDouble();
+        if (roll < uploadShare) {
+            String mapName = prefix + uploads++;
+            return new LoadRequest("upload", "POST", UPLOAD_PATH + encode(mapName), uploadBody,
+                    "multipart/form-data; boundary=" + BOUNDARY);
+        }
+        if (roll < uploadShare + deleteShare && !uploaded.isEmpty()) {
+            return new LoadRequest("delete", "DELETE", DELETE_PATH + encode(uploaded.poll()), null, null);
+        }
+        return reads.next(random);
+    }
+
+    @Override
+    public void completed(LoadRequest request, int status) {
+        if ("upload".equals(request.kind()) && status / 100 == 2) {
+            String query = request.path().substring(UPLOAD_PATH.length());
+            uploaded.add(URLDecoder.decode(query, StandardCharsets.UTF_8));
+        } else {
+            reads.completed(request, status);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
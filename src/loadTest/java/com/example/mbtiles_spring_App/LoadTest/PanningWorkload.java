@@ -0,0 +1,90 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * Сессии пользователя карты: окно просмотра из нескольких тайлов сдвигается на соседние позиции
+ * и иногда меняет масштаб, поэтому соседние запросы сильно пересекаются.
+ */
+final class PanningWorkload implements Workload {
+
+    private static final int VIEWPORT_WIDTH = 4;
+    private static final int VIEWPORT_HEIGHT = 3;
+    private static final int SESSION_STEPS = 40;
+    private static final double ZOOM_CHANCE = 0.15;
+
+    private final TileSpace space;
+    private final int hotZoom;
+    private final Deque<LoadRequest> pending = new ArrayDeque<>();
+    private SyntheticMbtiles map;
+    private int z;
+    private int x;
+    private int y;
+    private int steps;
+
+    PanningWorkload(TileSpace space, int hotZoom) {
+        this.space = space;
+        this.hotZoom = hotZoom;
+    }
+
+    @Override
+    public LoadRequest next(SplittableRandom random) {
+        if (pending.isEmpty()) {
+            if (map == null || steps-- <= 0) {
+                startSession(random);
+            } else {
+                move(random);
+            }
+            enqueueViewport(random);
+        }
+        return pending.poll();
+    }
+
+    private void startSession(SplittableRandom random) {
+        map = space.pick(random);
+        z = Math.max(map.getMinZoom(), Math.min(map.getMaxZoom(), hotZoom + random.nextInt(-2, 3)));
+        TileRange range = map.range(z);
+        x = random.nextInt(range.minX(), range.maxX() + 1);
+        y = random.nextInt(range.minY(), range.maxY() + 1);
+        steps = SESSION_STEPS;
+    }
+
+    private void move(SplittableRandom random) {
+        if (random.nextDouble() < ZOOM_CHANCE) {
+            if (random.nextBoolean() && z < map.getMaxZoom()) {
+                z++;
+                x = x * 2 + random.nextInt(2);
+                y = y * 2 + random.nextInt(2);
+            } else if (z > map.getMinZoom()) {
+                z--;
+                x /= 2;
+                y /= 2;
+            }
+        } else {
+            x += random.nextInt(-1, 2);
+            y += random.nextInt(-1, 2);
+        }
+        TileRange range = map.range(z);
+        x = Math.max(range.minX(), Math.min(range.maxX(), x));
+        y = Math.max(range.minY(), Math.min(range.maxY(), y));
+    }
+
+    private void enqueueViewport(SplittableRandom random) {
+        TileRange range = map.range(z);
+        for (int dx = -VIEWPORT_WIDTH / 2; dx < VIEWPORT_WIDTH - VIEWPORT_WIDTH / 2; dx++) {
+            for (int dy = -VIEWPORT_HEIGHT / 2; dy < VIEWPORT_HEIGHT - VIEWPORT_HEIGHT / 2; dy++) {
+                if (range.contains(x + dx, y + dy)) {
+                    pending.add(space.tile(random, map, z, x + dx, y + dy));
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            pending.add(space.tile(random, map, z, x, y));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Воспроизведение журнала доступа. Понимает combined/common log format ({@code "GET /path HTTP/1.1"}),
+ * строки вида {@code GET /path} и просто пути. Воспроизводятся только GET-запросы, каждый клиент
+ * начинает со своего смещения и проходит журнал по кругу.
+ */
+final class ReplayWorkload implements Workload {
+
+    private static final Pattern QUOTED = Pattern.compile("\"(GET|HEAD) (\\S+) HTTP/[^\"]*\"");
+    private static final Pattern PLAIN = Pattern.compile("^(?:(GET|HEAD)\\s+)?(/\\S*)");
+
+    private final List<String> paths;
+    private int position;
+
+    ReplayWorkload(List<String> paths, int worker, int workers) {
+        this.paths = paths;
+        this.position = (int) ((long) paths.size() * worker / workers);
+    }
+
+    static List<String> read(Path accessLog) throws IOException {
+        List<String> paths = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(accessLog, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                Matcher quoted = QUOTED.matcher(line);
+                if (quoted.find()) {
+                    paths.add(quoted.group(2));
+                    return;
+                }
+                Matcher plain = PLAIN.matcher(line.strip());
+                if (plain.find()) {
+                    paths.add(plain.group(2));
+                }
+            });
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("В журнале " + accessLog + " нет GET-запросов");
+        }
+        return List.copyOf(paths);
+    }
+
+    @Override
+    public LoadRequest next(SplittableRandom random) {
+        String path = paths.get(position);
+        position = (position + 1) % paths.size();
+        return LoadRequest.get(path.startsWith(TileSpace.TILE_PATH) ? "tile" : "other", path);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+final class TileSpace {
+
+    static final String TILE_PATH = "/api/v1/mbtiles/";
+
+    private final List<SyntheticMbtiles> maps;
+    private final double maplessShare;
+
+    TileSpace(List<SyntheticMbtiles> maps, double maplessShare) {
+        this.maps = maps;
+        this.maplessShare = maplessShare;
+    }
+
+    SyntheticMbtiles pick(SplittableRandom random) {
+        return maps.get(random.nextInt(maps.size()));
+    }
+
+    List<SyntheticMbtiles> maps() {
+        return maps;
+    }
+
+    int minZoom() {
+        return maps.stream().mapToInt(SyntheticMbtiles::getMinZoom).min().orElse(0);
+    }
+
+    int maxZoom() {
+        return maps.stream().mapToInt(SyntheticMbtiles::getMaxZoom).max().orElse(0);
+    }
+
+    long maxTiles(int z) {
+        return maps.stream().mapToLong(map -> map.range(z).size()).max().orElse(1);
+    }
+
+    LoadRequest tile(SplittableRandom random, SyntheticMbtiles map, int z, int x, int y) {
+        String path = TILE_PATH + z + "/" + x + "/" + y;
+        if (random.nextDouble() >= maplessShare) {
+            path += "?mapName=" + map.getName();
+        }
+        return LoadRequest.get("tile", path);
+    }
+
+    static int[] tileAt(TileRange range, long index) {
+        int height = range.maxY() - range.minY() + 1;
+        long position = Math.floorMod(index, range.size());
+        return new int[]{range.minX() + (int) (position / height), range.minY() + (int) (position % height)};
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import java.util.SplittableRandom;
+
+public interface Workload {
+
+    LoadRequest next(SplittableRandom random);
+
+    default void completed(LoadRequest request, int status) {
+    }
+}
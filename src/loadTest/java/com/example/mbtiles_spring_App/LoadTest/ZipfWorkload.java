@@ -0,0 +1,46 @@
+package com.example.mbtiles_spring_App.LoadTest;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Запросы тайлов с распределением Ципфа: популярность уровней убывает с удалением от "горячего" зума,
+ * внутри уровня небольшая часть тайлов получает основную долю запросов.
+ */
+final class ZipfWorkload implements Workload {
+
+    private static final int MAX_RANKS = 1 << 20;
+    private static final long SCRAMBLE = 0x9e3779b97f4a7c15L;
+
+    private final TileSpace space;
+    private final int[] zoomOrder;
+    private final ZipfSampler zooms;
+    private final ZipfSampler[] tiles;
+
+    ZipfWorkload(TileSpace space, int hotZoom, double exponent) {
+        this.space = space;
+        this.zoomOrder = IntStream.rangeClosed(space.minZoom(), space.maxZoom())
+                .boxed()
+                .sorted(Comparator.<Integer>comparingInt(z -> Math.abs(z - hotZoom)).thenComparing(Comparator.reverseOrder()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.zooms = new ZipfSampler(zoomOrder.length, exponent);
+        this.tiles = new ZipfSampler[space.maxZoom() + 1];
+        for (int z : zoomOrder) {
+            tiles[z] = new ZipfSampler((int) Math.min(space.maxTiles(z), MAX_RANKS), exponent);
+        }
+    }
+
+    @Override
+    public LoadRequest next(SplittableRandom random) {
+        SyntheticMbtiles map = space.pick(random);
+        int z = zoomOrder[zooms.sample(random)];
+        TileRange range = map.range(z);
+        int[] tile = TileSpace.tileAt(range, (tiles[z].sample(random) + 1L) * SCRAMBLE >>> 1);
+        return space.tile(random, map, z, tile[0], tile[1]);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mbtiles_spring_App.Caches;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String forContent(ByteBuffer data) {
+        return forHash(contentHash(data));
+    }
+
+    public static String forContent(byte[] data) {
+        return quote(HexFormat.of().formatHex(sha256().digest(data)));
+    }
+
+    /** ETag по уже посчитанному {@link #contentHash(ByteBuffer)}, чтобы не хешировать содержимое дважды. */
+    public static String forHash(String contentHash) {
+        return quote(contentHash);
+    }
+
+    /** SHA-256 содержимого в шестнадцатеричном виде: по нему же кэш тайлов объединяет одинаковое содержимое. */
+    public static String contentHash(ByteBuffer data) {
+        MessageDigest digest = sha256();
+        digest.update(data.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String forTileId(long loadedAt, String tileId) {
+        return quote(Long.toHexString(loadedAt) + "-" + tileId);
+    }
+
+    public static String identityVariant(String eTag) {
+        return variant(eTag, "identity");
+    }
+
+    public static String variant(String eTag, String variant) {
+        return eTag.substring(0, eTag.length() - 1) + "-" + variant + "\"";
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.mbtiles_spring_App.Caches;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Содержимое тайла, которое кэш хранит один раз на все координаты и карты с таким же SHA-256.
+ * Число ссылок меняет только {@link TileCache} внутри вычисления над своей таблицей, поэтому отдельная синхронизация не нужна.
+ */
+public final class SharedBlob {
+
+    private final String hash;
+    private final ByteBuffer data;
+    private int references;
+
+    SharedBlob(String hash, ByteBuffer data) {
+        this.hash = hash;
+        this.data = data;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /** Независимая копия указателей на общие байты: позиция одного читателя не влияет на других. */
+    public ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    public int getLength() {
+        return data.remaining();
+    }
+
+    int retain() {
+        return ++references;
+    }
+
+    int release() {
+        return --references;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.mbtiles_spring_App.Caches;
+
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class TileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TileCache.class);
+    private static final int MB = 1048576;
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int TRIM_BATCH = 64;
+
+    private final boolean enabled;
+    private final long maxWeight;
+    private final Cache<TileKey, TileResponse> tiles;
+    private final Cache<TileKey, String> eTags;
+    private final Cache<ContentId, String> contentHashes;
+    private final Map<String, SharedBlob> blobs = new ConcurrentHashMap<>();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder logicalBytes = new LongAdder();
+    private final LongAdder ownBytes = new LongAdder();
+    private final LongAdder sharedBytes = new LongAdder();
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    public TileCache(MeterRegistry meterRegistry,
+                     @Value("${mbtiles.tile-cache.enabled:true}") boolean enabled,
+                     @Value("${mbtiles.tile-cache.max-size:256}") long maxSize,
+                     @Value("${mbtiles.tile-cache.etag-entries:200000}") long eTagEntries) {
+        this.enabled = enabled;
+        this.maxWeight = maxSize * MB;
+        this.tiles = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((TileKey key, TileResponse tile) -> ENTRY_OVERHEAD + (tile.getBlob() != null ? 0 : tile.getLength()))
+                // Уведомления об удалении выполняются сразу, чтобы счётчики байтов не отставали от содержимого кэша
+                .executor(Runnable::run)
+                .removalListener((TileKey key, TileResponse tile, RemovalCause cause) -> {
+                    if (tile != null) {
+                        account(tile, -1);
+                        if (tile.getBlob() != null) {
+                            release(tile.getBlob());
+                        }
+                    }
+                })
+                .recordStats()
+                .build();
+        this.eTags = Caffeine.newBuilder()
+                .maximumSize(eTagEntries)
+                .build();
+        this.contentHashes = Caffeine.newBuilder()
+                .maximumSize(eTagEntries)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tiles, "mbtiles.tiles");
+        Gauge.builder("mbtiles.tile.cache.hit.ratio", tiles, cache -> cache.stats().hitRate())
+                .description("Доля запросов тайлов, обслуженных из кэша")
+                .register(meterRegistry);
+        Gauge.builder("mbtiles.tile.cache.bytes", logicalBytes, LongAdder::sum)
+                .description("Объём тайлов в кэше без учёта совпадающего содержимого")
+                .tag("kind", "logical")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("mbtiles.tile.cache.bytes", this, TileCache::getStoredBytes)
+                .description("Объём уникального содержимого тайлов в кэше")
+                .tag("kind", "stored")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("mbtiles.tile.cache.blobs", blobs, Map::size)
+                .description("Число общих блоков содержимого, на которые ссылаются тайлы в кэше")
+                .register(meterRegistry);
+        Gauge.builder("mbtiles.tile.cache.dedup.ratio", this, TileCache::getDedupRatio)
+                .description("Во сколько раз совпадающее содержимое тайлов уменьшило занятую память")
+                .register(meterRegistry);
+        log.info("Кэш тайлов {}: лимит {} МБ", enabled ? "включён" : "выключен", maxSize);
+    }
+
+    public TileResponse get(TileKey key) {
+        return enabled ? tiles.getIfPresent(key) : null;
+    }
+
+    /** Тайл из кэша без учёта в статистике попаданий: пакетная выдача проверяет кэш целыми фрагментами. */
+    public TileResponse peek(TileKey key) {
+        return enabled ? tiles.policy().getIfPresentQuietly(key) : null;
+    }
+
+    public void put(TileKey key, TileResponse tile) {
+        if (enabled && tile.getData() != null) {
+            account(tile, 1);
+            tiles.put(key, tile);
+            if (tile.getETag() != null) {
+                eTags.put(key, tile.getETag());
+            }
+            trim();
+        }
+    }
+
+    /**
+     * Кладёт тайл, храня его содержимое один раз на все координаты и карты с таким же SHA-256 (см. {@link #contentHash}).
+     * Возвращает тайл, который попал в кэш.
+     *
+     * <p>Общее содержимое учитывается в лимите кэша целиком, пока на него ссылается хотя бы один тайл, и освобождается
+     * вместе с последним из них.
+     */
+    public TileResponse put(TileKey key, TileResponse tile, String contentHash) {
+        if (!enabled || tile.getData() == null || contentHash == null) {
+            put(key, tile);
+            return tile;
+        }
+        TileResponse cached = tile.withBlob(retain(contentHash, tile.getData()));
+        put(key, cached);
+        return cached;
+    }
+
+    /**
+     * SHA-256 содержимого тайла. Для карт с tile_id хеш запоминается по версии карты и tile_id, чтобы одинаковое
+     * содержимое не хешировалось на каждой координате; ключом общего содержимого всё равно служит только хеш.
+     * Для tile_id при выключенном кэше возвращает null: хеш нужен только кэшу.
+     */
+    public String contentHash(String mapName, long loadedAt, String tileId, ByteBuffer data) {
+        if (tileId == null) {
+            return ETags.contentHash(data);
+        }
+        if (!enabled) {
+            return null;
+        }
+        return contentHashes.get(new ContentId(mapName, loadedAt, tileId), id -> ETags.contentHash(data));
+    }
+
+    public double getDedupRatio() {
+        long stored = getStoredBytes();
+        return stored > 0 ? (double) logicalBytes.sum() / stored : 1.0;
+    }
+
+    public long getStoredBytes() {
+        return ownBytes.sum() + sharedBytes.sum();
+    }
+
+    public String getETag(TileKey key) {
+        if (!enabled) {
+            return null;
+        }
+        // Проверка условного запроса не должна считаться попаданием или промахом: тайл затем всё равно читается через get
+        TileResponse tile = tiles.policy().getIfPresentQuietly(key);
+        return tile != null ? tile.getETag() : eTags.getIfPresent(key);
+    }
+
+    public void putETag(TileKey key, String eTag) {
+        if (enabled) {
+            eTags.put(key, eTag);
+        }
+    }
+
+    public void invalidateMap(String mapName) {
+        tiles.asMap().keySet().removeIf(key -> key.belongsTo(mapName));
+        eTags.asMap().keySet().removeIf(key -> key.belongsTo(mapName));
+        contentHashes.asMap().keySet().removeIf(id -> id.mapName().equals(mapName));
+        log.debug("Кэш тайлов карты '{}' очищен", mapName);
+    }
+
+    private void account(TileResponse tile, int sign) {
+        entries.add(sign);
+        logicalBytes.add(sign * (long) tile.getLength());
+        if (tile.getBlob() == null) {
+            ownBytes.add(sign * (long) tile.getLength());
+        }
+    }
+
+    private SharedBlob retain(String contentHash, ByteBuffer data) {
+        return blobs.compute(contentHash, (hash, blob) -> {
+            if (blob == null) {
+                blob = new SharedBlob(hash, data.slice());
+                sharedBytes.add(blob.getLength());
+            }
+            blob.retain();
+            return blob;
+        });
+    }
+
+    private void release(SharedBlob blob) {
+        blobs.computeIfPresent(blob.getHash(), (hash, current) -> {
+            if (current != blob || blob.release() > 0) {
+                return current;
+            }
+            sharedBytes.add(-blob.getLength());
+            return null;
+        });
+    }
+
+    private long footprint() {
+        return entries.sum() * ENTRY_OVERHEAD + ownBytes.sum() + sharedBytes.sum();
+    }
+
+    // Вес записи с общим содержимым не включает его байты, поэтому лимит с их учётом держится здесь:
+    // пока записи вместе с живым общим содержимым не помещаются в лимит, вытесняются самые холодные записи
+    private void trim() {
+        if (footprint() <= maxWeight || !trimLock.tryLock()) {
+            return;
+        }
+        try {
+            Policy.Eviction<TileKey, TileResponse> eviction = tiles.policy().eviction().orElseThrow();
+            while (footprint() > maxWeight) {
+                Map<TileKey, TileResponse> coldest = eviction.coldest(TRIM_BATCH);
+                if (coldest.isEmpty()) {
+                    break;
+                }
+                for (TileKey key : coldest.keySet()) {
+                    tiles.invalidate(key);
+                    if (footprint() <= maxWeight) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        tiles.invalidateAll();
+        eTags.invalidateAll();
+        contentHashes.invalidateAll();
+        log.debug("Кэш тайлов полностью очищен");
+    }
+
+    private record ContentId(String mapName, long loadedAt, String tileId) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.mbtiles_spring_App.Caches;
+
+public record TileKey(String mapName, int z, int x, int y) {
+
+    private static final char VARIANT_SEPARATOR = '@';
+
+    // Перекодированные варианты тайла хранятся под именем карты с суффиксом и очищаются вместе с ней
+    public static TileKey variant(String mapName, String variant, int z, int x, int y) {
+        return new TileKey(mapName + VARIANT_SEPARATOR + variant, z, x, y);
+    }
+
+    public boolean belongsTo(String mapName) {
+        return this.mapName.equals(mapName)
+                || this.mapName.length() > mapName.length()
+                && this.mapName.charAt(mapName.length()) == VARIANT_SEPARATOR
+                && this.mapName.startsWith(mapName);
+    }
+}
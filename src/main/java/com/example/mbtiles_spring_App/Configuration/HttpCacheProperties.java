@@ -0,0 +1,30 @@
+package com.example.mbtiles_spring_App.Configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class HttpCacheProperties {
+
+    private static final String MAP_MAX_AGE_PREFIX = "mbtiles.http.map-cache-max-age.";
+
+    private final Environment environment;
+    private final long defaultMaxAge;
+
+    public HttpCacheProperties(Environment environment,
+                               @Value("${mbtiles.http.cache-max-age:86400}") long defaultMaxAge) {
+        this.environment = environment;
+        this.defaultMaxAge = defaultMaxAge;
+    }
+
+    public String cacheControlFor(String mapName) {
+        int separator = mapName.indexOf('!');
+        String logicalName = separator >= 0 ? mapName.substring(0, separator) : mapName;
+        long maxAge = environment.getProperty(MAP_MAX_AGE_PREFIX + logicalName, Long.class, defaultMaxAge);
+        return CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic().getHeaderValue();
+    }
+}
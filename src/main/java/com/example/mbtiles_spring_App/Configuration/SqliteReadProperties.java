@@ -0,0 +1,64 @@
+package com.example.mbtiles_spring_App.Configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SqliteReadProperties {
+
+    private static final int READS_PER_PROCESSOR = 4;
+
+    private final int poolSize;
+    private final long mmapSize;
+    private final int cacheSize;
+    private final boolean queryOnly;
+    private final long acquireTimeoutMs;
+    private final int maxWaiting;
+    private final int maxConcurrentReads;
+
+    public SqliteReadProperties(@Value("${mbtiles.sqlite.pool-size:4}") int poolSize,
+                                @Value("${mbtiles.sqlite.mmap-size:268435456}") long mmapSize,
+                                @Value("${mbtiles.sqlite.cache-size:-8192}") int cacheSize,
+                                @Value("${mbtiles.sqlite.query-only:true}") boolean queryOnly,
+                                @Value("${mbtiles.sqlite.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+                                @Value("${mbtiles.sqlite.max-waiting:64}") int maxWaiting,
+                                @Value("${mbtiles.sqlite.max-concurrent-reads:-1}") int maxConcurrentReads) {
+        this.poolSize = Math.max(1, poolSize);
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.queryOnly = queryOnly;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.maxWaiting = Math.max(0, maxWaiting);
+        // Отрицательное значение - четыре чтения на процессор: при одном на носитель виртуальных потоков чтения выстраиваются
+        // в очередь за готовыми к запуску потоками и пропускная способность падает втрое (см. README); 0 снимает общий лимит
+        this.maxConcurrentReads = maxConcurrentReads < 0 ? READS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors() : maxConcurrentReads;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public boolean isQueryOnly() {
+        return queryOnly;
+    }
+
+    public long getAcquireTimeoutMs() {
+        return acquireTimeoutMs;
+    }
+
+    public int getMaxWaiting() {
+        return maxWaiting;
+    }
+
+    public int getMaxConcurrentReads() {
+        return maxConcurrentReads;
+    }
+}
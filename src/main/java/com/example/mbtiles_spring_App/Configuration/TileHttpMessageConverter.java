@@ -0,0 +1,56 @@
+package com.example.mbtiles_spring_App.Configuration;
+
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Metrics.TileMetrics;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+public class TileHttpMessageConverter extends AbstractHttpMessageConverter<TileResponse> {
+
+    private final TileMetrics tileMetrics;
+
+    public TileHttpMessageConverter(TileMetrics tileMetrics) {
+        super(MediaType.ALL);
+        this.tileMetrics = tileMetrics;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TileResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected TileResponse readInternal(Class<? extends TileResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Чтение тайлов из тела запроса не поддерживается", inputMessage);
+    }
+
+    @Override
+    protected MediaType getDefaultContentType(TileResponse tileResponse) {
+        return tileResponse.getMediaType();
+    }
+
+    @Override
+    protected Long getContentLength(TileResponse tileResponse, MediaType contentType) {
+        return (long) tileResponse.getLength();
+    }
+
+    @Override
+    protected void writeInternal(TileResponse tileResponse, HttpOutputMessage outputMessage) throws IOException {
+        long started = System.nanoTime();
+        tileResponse.writeTo(outputMessage.getBody());
+        if (tileResponse.getDescriptor() != null) {
+            tileMetrics.recordSerialization(tileResponse.getDescriptor().getMapName(), tileResponse.getLength(),
+                    System.nanoTime() - started);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.mbtiles_spring_App.Configuration;
+
+import com.example.mbtiles_spring_App.Metrics.TileMetrics;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final TileMetrics tileMetrics;
+
+    public WebConfig(TileMetrics tileMetrics) {
+        this.tileMetrics = tileMetrics;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new TileHttpMessageConverter(tileMetrics));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.DTO.ArchiveStatusResponse;
+import com.example.mbtiles_spring_App.Services.ArchiveService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/archive")
+@Tag(name = "Archive API", description = "Компиляция карт в архив тайлов, отображаемый в память")
+public class ArchiveController {
+    private static final Logger log = LoggerFactory.getLogger(ArchiveController.class);
+    private final ArchiveService archiveService;
+
+    public ArchiveController(ArchiveService archiveService) {
+        this.archiveService = archiveService;
+    }
+
+    @Operation(summary = "Состояние архива карты", description = "Возвращает состояние компиляции и размер архива тайлов версии карты.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Состояние получено"),
+            @ApiResponse(responseCode = "404", description = "Архив карты не компилировался")
+    })
+    @GetMapping("/{mapName}")
+    public ResponseEntity<ArchiveStatusResponse> getStatus(@PathVariable String mapName) {
+        return archiveService.getStatus(mapName)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Скомпилировать архив", description = "Ставит текущую версию карты в очередь компиляции архива тайлов.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Компиляция запланирована"),
+            @ApiResponse(responseCode = "400", description = "Карта не найдена")
+    })
+    @PostMapping("/{mapName}")
+    public ResponseEntity<ArchiveStatusResponse> compile(@PathVariable String mapName) throws MBTilesReadException {
+        log.info("Запрос компиляции архива карты: {}", mapName);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(archiveService.request(mapName));
+    }
+}
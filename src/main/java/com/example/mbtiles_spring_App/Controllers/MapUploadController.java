@@ -0,0 +1,88 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.DTO.UploadStatusResponse;
+import com.example.mbtiles_spring_App.Services.MapUploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Min;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/mbtiles/uploads")
+@Tag(name = "Mbtiles Upload API", description = "Потоковая загрузка больших файлов mbtiles с докачкой")
+public class MapUploadController {
+    private static final Logger log = LoggerFactory.getLogger(MapUploadController.class);
+    private final MapUploadService mapUploadService;
+
+    public MapUploadController(MapUploadService mapUploadService) {
+        this.mapUploadService = mapUploadService;
+    }
+
+    @Operation(summary = "Начать загрузку", description = "Создаёт сессию загрузки и возвращает её идентификатор.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Сессия создана"),
+            @ApiResponse(responseCode = "400", description = "Недопустимое имя карты или размер")
+    })
+    @PostMapping
+    public ResponseEntity<UploadStatusResponse> startUpload(
+            @RequestParam String mapName,
+            @RequestParam(defaultValue = "-1") long size
+    ) throws MBTilesReadException, IOException {
+        log.info("Начало загрузки: mapName={}, size={}", mapName, size);
+        return ResponseEntity.status(HttpStatus.CREATED).body(mapUploadService.start(mapName, size));
+    }
+
+    @Operation(summary = "Передать часть файла",
+            description = "Дописывает тело запроса в файл начиная со смещения offset. "
+                    + "Для докачки повторите запрос со смещением, возвращённым в статусе загрузки.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Часть файла принята"),
+            @ApiResponse(responseCode = "400", description = "Неверное смещение или файл не прошёл проверку")
+    })
+    @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadStatusResponse> uploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam @Min(0) long offset,
+            InputStream body
+    ) throws MBTilesReadException, IOException {
+        log.debug("Часть загрузки {}: offset={}", uploadId, offset);
+        return ResponseEntity.ok(mapUploadService.append(uploadId, offset, body));
+    }
+
+    @Operation(summary = "Статус загрузки", description = "Возвращает количество полученных байт и состояние загрузки.")
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadStatusResponse> getUploadStatus(@PathVariable String uploadId) throws MBTilesReadException {
+        return ResponseEntity.ok(mapUploadService.getStatus(uploadId));
+    }
+
+    @Operation(summary = "Завершить загрузку",
+            description = "Проверяет файл и публикует его атомарным переименованием в каталог карт.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Карта опубликована"),
+            @ApiResponse(responseCode = "400", description = "Файл не прошёл проверку")
+    })
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<UploadStatusResponse> completeUpload(@PathVariable String uploadId) throws MBTilesReadException, IOException {
+        log.info("Завершение загрузки {}", uploadId);
+        return ResponseEntity.ok(mapUploadService.complete(uploadId));
+    }
+
+    @Operation(summary = "Отменить загрузку", description = "Удаляет сессию и принятые данные.")
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) throws MBTilesReadException, IOException {
+        log.info("Отмена загрузки {}", uploadId);
+        mapUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,24 +1,39 @@
 package com.example.mbtiles_spring_App.Controllers;
 
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.DTO.BatchTileRequest;
 import com.example.mbtiles_spring_App.DTO.MapInfoResponse;
+import com.example.mbtiles_spring_App.DTO.MapVersionsResponse;
 import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.TileBatchPlan;
+import com.example.mbtiles_spring_App.Services.CompositeService;
 import com.example.mbtiles_spring_App.Services.MbtilesService;
+import com.example.mbtiles_spring_App.Services.TileBatchService;
+import com.example.mbtiles_spring_App.Services.TranscodeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.imintel.mbtiles4j.MBTilesReadException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -27,28 +42,161 @@ import java.util.List;
 public class MbtilesController {
     private static final Logger log = LoggerFactory.getLogger(MbtilesController.class);
     private final MbtilesService mbtilesService;
+    private final TileBatchService tileBatchService;
+    private final CompositeService compositeService;
+    private final TranscodeService transcodeService;
+    private final HttpStatus missingTileStatus;
 
-    public MbtilesController(MbtilesService mbtilesService) {
+    public MbtilesController(MbtilesService mbtilesService,
+                             TileBatchService tileBatchService,
+                             CompositeService compositeService,
+                             TranscodeService transcodeService,
+                             @Value("${mbtiles.tile.missing-status:204}") int missingTileStatus) {
         this.mbtilesService = mbtilesService;
+        this.tileBatchService = tileBatchService;
+        this.compositeService = compositeService;
+        this.transcodeService = transcodeService;
+        this.missingTileStatus = HttpStatus.valueOf(missingTileStatus);
     }
 
-    @Operation(summary = "Получить тайл карты", description = "Возвращает тайл карты по заданным координатам и уровню зума.")
+    @Operation(summary = "Получить тайл карты",
+            description = "Возвращает тайл карты по заданным координатам и уровню зума. Растровый тайл может быть перекодирован "
+                    + "в другой формат или качество через параметры format и quality либо заголовок Accept.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Тайл успешно получен", content = @Content(mediaType = "application/octet-stream")),
+            @ApiResponse(responseCode = "204", description = "Тайла нет в карте (статус настраивается через mbtiles.tile.missing-status)"),
+            @ApiResponse(responseCode = "304", description = "Тайл не изменился"),
             @ApiResponse(responseCode = "404", description = "Тайл не найден")
     })
     @GetMapping("/{z}/{x}/{y}")
-    public ResponseEntity<byte[]> getMbtilesByMapNameAndZoomLahLat(
+    public ResponseEntity<TileResponse> getMbtilesByMapNameAndZoomLahLat(
             @RequestParam(required = false) String mapName,
             @PathVariable @Min(0) Integer z,
             @PathVariable @Min(0) Integer x,
-            @PathVariable @Min(0) Integer y
+            @PathVariable @Min(0) Integer y,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) @Min(1) @Max(100) Integer quality,
+            @RequestHeader HttpHeaders headers
     ) throws MBTilesReadException, IOException {
-        log.info("Получен запрос на тайл: mapName={}, z={}, x={}, y={}", mapName, z, x, y);
-        TileResponse tileResponse = mbtilesService.getTile(mapName, z, x, y);
-        MediaType mediaType = MediaType.parseMediaType(tileResponse.getMimeType());
-        log.debug("MimeType: {}", mediaType);
-        return ResponseEntity.ok().contentType(mediaType).body(tileResponse.getData());
+        log.debug("Получен запрос на тайл: mapName={}, z={}, x={}, y={}", mapName, z, x, y);
+        boolean acceptsGzip = acceptsGzip(headers);
+        MapDescriptor mapDescriptor = null;
+        TranscodeService.Variant variant = null;
+        boolean named = mapName != null && !mapName.isBlank();
+        // Без имени карты условный запрос проверяется по карте, из которой тайл придёт, если она известна без чтения
+        String checkedMap = named ? mapName
+                : isConditional(headers) ? mbtilesService.findTileMap(z, x, y).orElse(null) : null;
+        if (checkedMap != null) {
+            MapDescriptor descriptor = mbtilesService.getMapInfo(checkedMap);
+            if (named) {
+                mapDescriptor = descriptor;
+            }
+            variant = transcodeService.negotiate(descriptor, format, quality, headers.getAccept()).orElse(null);
+            String eTag = mbtilesService.getTileETag(checkedMap, z, x, y).orElse(null);
+            if (eTag != null && descriptor.isGzipEncoded() && !acceptsGzip) {
+                eTag = ETags.identityVariant(eTag);
+            }
+            if (eTag != null && variant != null) {
+                eTag = variant.eTag(eTag);
+            }
+            if (isNotModified(headers, eTag, descriptor.getLoadedAt())) {
+                log.debug("Тайл не изменился: mapName={}, z={}, x={}, y={}", checkedMap, z, x, y);
+                return notModified(eTag, descriptor);
+            }
+        }
+        TileResponse tileResponse = mbtilesService.getTile(mapName, z, x, y).orElse(null);
+        if (tileResponse == null) {
+            ResponseEntity.BodyBuilder missing = ResponseEntity.status(missingTileStatus);
+            if (mapDescriptor != null) {
+                missing.header(HttpHeaders.CACHE_CONTROL, mapDescriptor.getCacheControl());
+            }
+            return missing.build();
+        }
+        MapDescriptor descriptor = tileResponse.getDescriptor();
+        if (mapDescriptor == null) {
+            variant = transcodeService.negotiate(descriptor, format, quality, headers.getAccept()).orElse(null);
+        }
+        if (variant != null) {
+            tileResponse = transcodeService.transcode(tileResponse, variant, z, x, y);
+        }
+        log.debug("MimeType: {}", tileResponse.getMediaType());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        List<String> vary = vary(descriptor);
+        if (!vary.isEmpty()) {
+            builder.varyBy(vary.toArray(String[]::new));
+        }
+        if (tileResponse.isGzipped()) {
+            if (acceptsGzip) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            } else {
+                tileResponse = mbtilesService.decompress(tileResponse);
+            }
+        }
+        return builder
+                .contentType(tileResponse.getMediaType())
+                .contentLength(tileResponse.getLength())
+                .eTag(tileResponse.getETag())
+                .lastModified(descriptor.getLoadedAt())
+                .header(HttpHeaders.CACHE_CONTROL, descriptor.getCacheControl())
+                .body(tileResponse);
+    }
+
+    @Operation(summary = "Получить наложение слоёв",
+            description = "Накладывает растровые тайлы перечисленных карт (первая - нижний слой) и возвращает один тайл. "
+                    + "Результат кэшируется по списку версий карт.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Тайл успешно собран", content = @Content(mediaType = "image/png")),
+            @ApiResponse(responseCode = "204", description = "Тайла нет ни в одном слое (статус настраивается через mbtiles.tile.missing-status)"),
+            @ApiResponse(responseCode = "304", description = "Тайл не изменился"),
+            @ApiResponse(responseCode = "400", description = "Некорректный список слоёв или формат"),
+            @ApiResponse(responseCode = "503", description = "Чтение слоёв отклонено из-за перегрузки, повторите позже")
+    })
+    @GetMapping("/composite/{z}/{x}/{y}")
+    public ResponseEntity<TileResponse> getCompositeTile(
+            @RequestParam List<String> layers,
+            @RequestParam(defaultValue = "png") String format,
+            @PathVariable @Min(0) Integer z,
+            @PathVariable @Min(0) Integer x,
+            @PathVariable @Min(0) Integer y,
+            @RequestHeader HttpHeaders headers
+    ) throws MBTilesReadException {
+        log.debug("Запрос наложения слоёв: layers={}, z={}, x={}, y={}", layers, z, x, y);
+        TileResponse tileResponse = compositeService.getTile(layers, z, x, y, CompositeService.outputFormat(format)).orElse(null);
+        if (tileResponse == null) {
+            return ResponseEntity.status(missingTileStatus).build();
+        }
+        MapDescriptor descriptor = tileResponse.getDescriptor();
+        // Время изменения у наложения не определено, поэтому проверяется только ETag
+        if (!headers.getIfNoneMatch().isEmpty() && isNotModified(headers, tileResponse.getETag(), 0)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(tileResponse.getETag())
+                    .header(HttpHeaders.CACHE_CONTROL, descriptor.getCacheControl())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(tileResponse.getMediaType())
+                .contentLength(tileResponse.getLength())
+                .eTag(tileResponse.getETag())
+                .header(HttpHeaders.CACHE_CONTROL, descriptor.getCacheControl())
+                .body(tileResponse);
+    }
+
+    @Operation(summary = "Получить пакет тайлов",
+            description = "Возвращает тайлы из списка или из области и диапазона зумов одним потоком. "
+                    + "Каждый тайл передаётся кадром: z, x, y и длина данных (int32, big-endian), затем данные тайла в том виде, "
+                    + "в котором они хранятся в файле. Поток завершается кадром с z = -1, числом переданных тайлов в x, "
+                    + "признаком ошибки в y (0 - успех, 1 - ошибка) и текстом ошибки вместо данных.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Поток кадров с тайлами", content = @Content(mediaType = "application/octet-stream")),
+            @ApiResponse(responseCode = "400", description = "Некорректный запрос")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getTilesBatch(@Valid @RequestBody BatchTileRequest request) throws MBTilesReadException {
+        log.debug("Запрос пакета тайлов: mapName={}, tiles={}", request.getMapName(),
+                request.getTiles() != null ? request.getTiles().size() : "область");
+        TileBatchPlan plan = tileBatchService.plan(request);
+        StreamingResponseBody body = out -> tileBatchService.write(plan, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(body);
     }
 
     @Operation(summary = "Загрузить файл mbtiles", description = "Загружает новый mbtiles файл на сервер.")
@@ -80,14 +228,43 @@ public class MbtilesController {
     @Operation(summary = "Получить информацию о карте", description = "Возвращает информацию о карте по её названию.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Информация о карте успешно получена", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MapInfoResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Информация о карте не изменилась"),
             @ApiResponse(responseCode = "404", description = "Карта не найдена")
     })
     @GetMapping("/{mapName}")
-    public ResponseEntity<MapInfoResponse> getMapInfo(@PathVariable String mapName) throws MBTilesReadException {
-        log.info("Запрос информации о карте: {}", mapName);
-        MapInfoResponse info = mbtilesService.getMapInfo(mapName);
-        log.debug("Информация по карте {}: {}", mapName, info);
-        return ResponseEntity.ok(info);
+    public ResponseEntity<byte[]> getMapInfo(@PathVariable String mapName) throws MBTilesReadException {
+        log.debug("Запрос информации о карте: {}", mapName);
+        MapDescriptor descriptor = mbtilesService.getMapInfo(mapName);
+        log.debug("Информация по карте {}: {}", mapName, descriptor.getName());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(descriptor.getInfoETag())
+                .lastModified(descriptor.getLoadedAt())
+                .header(HttpHeaders.CACHE_CONTROL, descriptor.getCacheControl())
+                .body(descriptor.getInfoJson());
+    }
+
+    @Operation(summary = "Получить версии карты", description = "Возвращает текущую и все загруженные версии карты по её логическому имени.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Версии карты успешно получены"),
+            @ApiResponse(responseCode = "400", description = "Карта не найдена")
+    })
+    @GetMapping("/{mapName}/versions")
+    public ResponseEntity<MapVersionsResponse> getVersions(@PathVariable String mapName) throws MBTilesReadException {
+        return ResponseEntity.ok(mbtilesService.getVersions(mapName));
+    }
+
+    @Operation(summary = "Назначить текущую версию", description = "Атомарно переключает логическое имя карты на указанную версию.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Версия назначена текущей"),
+            @ApiResponse(responseCode = "400", description = "Версия не найдена")
+    })
+    @PostMapping("/{mapName}/promote")
+    public ResponseEntity<MapVersionsResponse> promote(@PathVariable String mapName,
+                                                       @RequestParam String version) throws MBTilesReadException {
+        log.info("Назначение версии {} для карты {}", version, mapName);
+        mbtilesService.promote(mapName, version);
+        return ResponseEntity.ok(mbtilesService.getVersions(mapName));
     }
 
     @Operation(summary = "Удалить карту", description = "Удаляет карту по её названию.")
@@ -101,4 +278,60 @@ public class MbtilesController {
         log.info("Карта закрыта: {}", mapName);
         return ResponseEntity.noContent().build();
     }
+
+    private static boolean isConditional(HttpHeaders headers) {
+        return !headers.getIfNoneMatch().isEmpty() || headers.getIfModifiedSince() >= 0;
+    }
+
+    private static boolean isNotModified(HttpHeaders headers, String eTag, long lastModified) {
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return eTag != null && ifNoneMatch.stream()
+                    .anyMatch(tag -> tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag));
+        }
+        long ifModifiedSince = headers.getIfModifiedSince();
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String token : value.split(",")) {
+                String[] parts = token.trim().split(";");
+                String coding = parts[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                    continue;
+                }
+                boolean rejected = parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?");
+                if (!rejected) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<String> vary(MapDescriptor descriptor) {
+        List<String> vary = new ArrayList<>(2);
+        if (descriptor.isGzipEncoded()) {
+            vary.add(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (transcodeService.isNegotiable(descriptor)) {
+            vary.add(HttpHeaders.ACCEPT);
+        }
+        return vary;
+    }
+
+    private ResponseEntity<TileResponse> notModified(String eTag, MapDescriptor descriptor) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .lastModified(descriptor.getLoadedAt())
+                .header(HttpHeaders.CACHE_CONTROL, descriptor.getCacheControl());
+        List<String> vary = vary(descriptor);
+        if (!vary.isEmpty()) {
+            builder.varyBy(vary.toArray(String[]::new));
+        }
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        return builder.build();
+    }
 }
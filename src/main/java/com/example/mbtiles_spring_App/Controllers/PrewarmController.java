@@ -0,0 +1,57 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.DTO.PrewarmStatusResponse;
+import com.example.mbtiles_spring_App.Services.PrewarmService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/prewarm")
+@Tag(name = "Prewarm API", description = "Прогрев кэша тайлов нижних уровней")
+public class PrewarmController {
+    private static final Logger log = LoggerFactory.getLogger(PrewarmController.class);
+    private final PrewarmService prewarmService;
+
+    public PrewarmController(PrewarmService prewarmService) {
+        this.prewarmService = prewarmService;
+    }
+
+    @Operation(summary = "Состояние прогрева", description = "Возвращает прогресс прогрева всех загруженных карт.")
+    @GetMapping
+    public ResponseEntity<List<PrewarmStatusResponse>> getStatuses() {
+        return ResponseEntity.ok(prewarmService.getStatuses());
+    }
+
+    @Operation(summary = "Состояние прогрева карты", description = "Возвращает прогресс прогрева версии карты.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Прогресс получен"),
+            @ApiResponse(responseCode = "404", description = "Прогрев карты не запускался")
+    })
+    @GetMapping("/{mapName}")
+    public ResponseEntity<PrewarmStatusResponse> getStatus(@PathVariable String mapName) {
+        return prewarmService.getStatus(mapName)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Запустить прогрев", description = "Ставит текущую версию карты в очередь прогрева, если он ещё не идёт.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Прогрев запланирован"),
+            @ApiResponse(responseCode = "400", description = "Карта не найдена")
+    })
+    @PostMapping("/{mapName}")
+    public ResponseEntity<PrewarmStatusResponse> prewarm(@PathVariable String mapName) throws MBTilesReadException {
+        log.info("Запрос прогрева карты: {}", mapName);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(prewarmService.request(mapName));
+    }
+}
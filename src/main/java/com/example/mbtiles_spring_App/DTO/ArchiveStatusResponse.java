@@ -0,0 +1,73 @@
+package com.example.mbtiles_spring_App.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class ArchiveStatusResponse {
+
+    @Schema(description = "Версия карты", example = "satellite!1718000000000")
+    private final String mapName;
+
+    @Schema(description = "Состояние компиляции архива: QUEUED, RUNNING, READY, FAILED", example = "READY")
+    private final String state;
+
+    @Schema(description = "Тайлов в архиве", example = "87381")
+    private final long tiles;
+
+    @Schema(description = "Уникальных тайлов в архиве", example = "21050")
+    private final long blobs;
+
+    @Schema(description = "Тайлов на одно уникальное содержимое", example = "4.15")
+    private final double dedupRatio;
+
+    @Schema(description = "Размер архива в байтах", example = "52428800")
+    private final long bytes;
+
+    @Schema(description = "Время компиляции, мс", example = "1250")
+    private final long compileMs;
+
+    @Schema(description = "Причина ошибки")
+    private final String error;
+
+    public ArchiveStatusResponse(String mapName, String state, long tiles, long blobs, long bytes, long compileMs, String error) {
+        this.mapName = mapName;
+        this.state = state;
+        this.tiles = tiles;
+        this.blobs = blobs;
+        this.dedupRatio = blobs > 0 ? (double) tiles / blobs : 0;
+        this.bytes = bytes;
+        this.compileMs = compileMs;
+        this.error = error;
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getTiles() {
+        return tiles;
+    }
+
+    public long getBlobs() {
+        return blobs;
+    }
+
+    public double getDedupRatio() {
+        return dedupRatio;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getCompileMs() {
+        return compileMs;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.mbtiles_spring_App.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+
+import java.util.List;
+
+public class BatchTileRequest {
+
+    @Schema(description = "Название карты", example = "satellite!1713690000000")
+    @NotBlank
+    private String mapName;
+
+    @Schema(description = "Явный список тайлов. Если задан, параметры области игнорируются")
+    @Valid
+    private List<TileCoordinate> tiles;
+
+    @Schema(description = "Минимальная долгота области", example = "37.3")
+    private Double minLon;
+
+    @Schema(description = "Минимальная широта области", example = "55.5")
+    private Double minLat;
+
+    @Schema(description = "Максимальная долгота области", example = "37.9")
+    private Double maxLon;
+
+    @Schema(description = "Максимальная широта области", example = "55.9")
+    private Double maxLat;
+
+    @Schema(description = "Минимальный зум области", example = "0")
+    private Integer minZoom;
+
+    @Schema(description = "Максимальный зум области", example = "12")
+    private Integer maxZoom;
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public void setMapName(String mapName) {
+        this.mapName = mapName;
+    }
+
+    public List<TileCoordinate> getTiles() {
+        return tiles;
+    }
+
+    public void setTiles(List<TileCoordinate> tiles) {
+        this.tiles = tiles;
+    }
+
+    public Double getMinLon() {
+        return minLon;
+    }
+
+    public void setMinLon(Double minLon) {
+        this.minLon = minLon;
+    }
+
+    public Double getMinLat() {
+        return minLat;
+    }
+
+    public void setMinLat(Double minLat) {
+        this.minLat = minLat;
+    }
+
+    public Double getMaxLon() {
+        return maxLon;
+    }
+
+    public void setMaxLon(Double maxLon) {
+        this.maxLon = maxLon;
+    }
+
+    public Double getMaxLat() {
+        return maxLat;
+    }
+
+    public void setMaxLat(Double maxLat) {
+        this.maxLat = maxLat;
+    }
+
+    public Integer getMinZoom() {
+        return minZoom;
+    }
+
+    public void setMinZoom(Integer minZoom) {
+        this.minZoom = minZoom;
+    }
+
+    public Integer getMaxZoom() {
+        return maxZoom;
+    }
+
+    public void setMaxZoom(Integer maxZoom) {
+        this.maxZoom = maxZoom;
+    }
+}
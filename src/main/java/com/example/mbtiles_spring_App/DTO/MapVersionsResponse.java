@@ -0,0 +1,35 @@
+package com.example.mbtiles_spring_App.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+public class MapVersionsResponse {
+
+    @Schema(description = "Логическое имя карты", example = "satellite")
+    private final String name;
+
+    @Schema(description = "Текущая версия карты", example = "satellite!1718000000000")
+    private final String current;
+
+    @Schema(description = "Все загруженные версии, от новой к старой")
+    private final List<String> versions;
+
+    public MapVersionsResponse(String name, String current, List<String> versions) {
+        this.name = name;
+        this.current = current;
+        this.versions = versions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCurrent() {
+        return current;
+    }
+
+    public List<String> getVersions() {
+        return versions;
+    }
+}
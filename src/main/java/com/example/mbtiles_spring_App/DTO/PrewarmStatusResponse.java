@@ -0,0 +1,124 @@
+package com.example.mbtiles_spring_App.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class PrewarmStatusResponse {
+
+    @Schema(description = "Версия карты", example = "satellite!1718000000000")
+    private final String mapName;
+
+    @Schema(description = "Состояние прогрева", example = "RUNNING")
+    private final String state;
+
+    @Schema(description = "Первый прогреваемый уровень", example = "0")
+    private final int minZoom;
+
+    @Schema(description = "Последний прогреваемый уровень", example = "8")
+    private final int maxZoom;
+
+    @Schema(description = "Текущий уровень", example = "6")
+    private final int zoom;
+
+    @Schema(description = "Тайлов в границах карты на прогреваемых уровнях", example = "87381")
+    private final long tilesTotal;
+
+    @Schema(description = "Проверено тайлов", example = "5461")
+    private final long tilesScanned;
+
+    @Schema(description = "Тайлов в кэше после прогрева", example = "4980")
+    private final long tilesCached;
+
+    @Schema(description = "Объём прогретых тайлов в байтах", example = "52428800")
+    private final long bytes;
+
+    @Schema(description = "Прогресс в процентах", example = "6.25")
+    private final double progress;
+
+    @Schema(description = "Время начала, мс с эпохи")
+    private final long startedAt;
+
+    @Schema(description = "Время завершения, мс с эпохи")
+    private final long finishedAt;
+
+    @Schema(description = "Причина ошибки")
+    private final String error;
+
+    public PrewarmStatusResponse(String mapName,
+                                 String state,
+                                 int minZoom,
+                                 int maxZoom,
+                                 int zoom,
+                                 long tilesTotal,
+                                 long tilesScanned,
+                                 long tilesCached,
+                                 long bytes,
+                                 long startedAt,
+                                 long finishedAt,
+                                 String error) {
+        this.mapName = mapName;
+        this.state = state;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.zoom = zoom;
+        this.tilesTotal = tilesTotal;
+        this.tilesScanned = tilesScanned;
+        this.tilesCached = tilesCached;
+        this.bytes = bytes;
+        this.progress = tilesTotal > 0 ? Math.min(100.0, tilesScanned * 100.0 / tilesTotal) : 0;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public long getTilesTotal() {
+        return tilesTotal;
+    }
+
+    public long getTilesScanned() {
+        return tilesScanned;
+    }
+
+    public long getTilesCached() {
+        return tilesCached;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.mbtiles_spring_App.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+
+public class TileCoordinate {
+
+    @Schema(description = "Уровень зума", example = "3")
+    @Min(0)
+    private int z;
+
+    @Schema(description = "Номер столбца тайла", example = "4")
+    @Min(0)
+    private int x;
+
+    @Schema(description = "Номер строки тайла", example = "2")
+    @Min(0)
+    private int y;
+
+    public TileCoordinate() {
+    }
+
+    public TileCoordinate(int z, int x, int y) {
+        this.z = z;
+        this.x = x;
+        this.y = y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public void setZ(int z) {
+        this.z = z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public void setX(int x) {
+        this.x = x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public void setY(int y) {
+        this.y = y;
+    }
+}
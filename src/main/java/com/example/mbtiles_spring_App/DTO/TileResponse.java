@@ -1,33 +1,105 @@
 package com.example.mbtiles_spring_App.DTO;
 
+import com.example.mbtiles_spring_App.Caches.SharedBlob;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
 import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public class TileResponse {
 
+    private static final int CHUNK_SIZE = 8192;
+
     @Schema(description = "Данные тайла", example = "base64 encoded image data")
-    private byte[] data;
+    private final ByteBuffer data;
 
     @Schema(description = "Тип MIME данных тайла", example = "image/png")
-    private String mimeType;
+    private final MediaType mediaType;
+
+    @Schema(description = "Строгий ETag содержимого тайла")
+    private final String eTag;
 
-    public TileResponse(byte[] data, String mimeType) {
+    @Schema(hidden = true)
+    private final MapDescriptor descriptor;
+
+    @Schema(hidden = true)
+    private final SharedBlob blob;
+
+    public TileResponse(byte[] data, MediaType mediaType, String eTag, MapDescriptor descriptor) {
+        this(data != null ? ByteBuffer.wrap(data) : null, mediaType, eTag, descriptor);
+    }
+
+    public TileResponse(ByteBuffer data, MediaType mediaType, String eTag, MapDescriptor descriptor) {
+        this(data, mediaType, eTag, descriptor, null);
+    }
+
+    private TileResponse(ByteBuffer data, MediaType mediaType, String eTag, MapDescriptor descriptor, SharedBlob blob) {
         this.data = data;
-        this.mimeType = mimeType;
+        this.mediaType = mediaType;
+        this.eTag = eTag;
+        this.descriptor = descriptor;
+        this.blob = blob;
+    }
+
+    /** Тот же тайл поверх общего содержимого из кэша; пока тайл в кэше, он держит ссылку на это содержимое. */
+    public TileResponse withBlob(SharedBlob blob) {
+        return new TileResponse(blob.getData(), mediaType, eTag, descriptor, blob);
     }
 
-    public byte[] getData() {
+    public ByteBuffer getData() {
         return data;
     }
 
-    public String getMimeType() {
-        return mimeType;
+    public MediaType getMediaType() {
+        return mediaType;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public String getETag() {
+        return eTag;
+    }
+
+    public MapDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public SharedBlob getBlob() {
+        return blob;
+    }
+
+    public boolean isGzipped() {
+        if (descriptor == null || !descriptor.isGzipEncoded() || data == null || data.remaining() < 2) {
+            return false;
+        }
+        int position = data.position();
+        return data.get(position) == (byte) 0x1f && data.get(position + 1) == (byte) 0x8b;
+    }
+
+    public int getLength() {
+        return data != null ? data.remaining() : 0;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (data != null) {
+            write(data, out);
+        }
     }
 
-    public void setMimeType(String mimeType) {
-        this.mimeType = mimeType;
+    /** Пишет содержимое буфера, не меняя его позицию; буфер вне кучи копируется частями. */
+    public static void write(ByteBuffer data, OutputStream out) throws IOException {
+        int position = data.position();
+        int remaining = data.remaining();
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset() + position, remaining);
+            return;
+        }
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, remaining)];
+        for (int offset = 0; offset < remaining; offset += chunk.length) {
+            int length = Math.min(chunk.length, remaining - offset);
+            data.get(position + offset, chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
     }
 }
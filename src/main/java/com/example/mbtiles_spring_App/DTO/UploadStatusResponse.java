@@ -0,0 +1,79 @@
+package com.example.mbtiles_spring_App.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class UploadStatusResponse {
+
+    @Schema(description = "Идентификатор загрузки")
+    private final String uploadId;
+
+    @Schema(description = "Название карты", example = "satellite")
+    private final String mapName;
+
+    @Schema(description = "Получено байт", example = "1048576")
+    private final long receivedBytes;
+
+    @Schema(description = "Ожидаемый размер файла в байтах, -1 если неизвестен", example = "4294967296")
+    private final long totalBytes;
+
+    @Schema(description = "Прогресс загрузки в процентах, -1 если размер неизвестен", example = "12.5")
+    private final double progress;
+
+    @Schema(description = "Состояние загрузки", example = "RECEIVING")
+    private final String state;
+
+    @Schema(description = "Имя опубликованной карты")
+    private final String publishedName;
+
+    @Schema(description = "Причина ошибки")
+    private final String error;
+
+    public UploadStatusResponse(String uploadId,
+                                String mapName,
+                                long receivedBytes,
+                                long totalBytes,
+                                String state,
+                                String publishedName,
+                                String error) {
+        this.uploadId = uploadId;
+        this.mapName = mapName;
+        this.receivedBytes = receivedBytes;
+        this.totalBytes = totalBytes;
+        this.progress = totalBytes > 0 ? receivedBytes * 100.0 / totalBytes : -1;
+        this.state = state;
+        this.publishedName = publishedName;
+        this.error = error;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getPublishedName() {
+        return publishedName;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
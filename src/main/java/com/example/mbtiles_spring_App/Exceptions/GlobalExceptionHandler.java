@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import org.imintel.mbtiles4j.MBTilesReadException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -18,6 +19,16 @@ public class GlobalExceptionHandler {
 
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    @ExceptionHandler(ReadRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleReadRejectedException(ReadRejectedException ex) {
+        log.warn("Чтение отклонено: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
     @ExceptionHandler(MBTilesReadException.class)
     public ResponseEntity<Map<String, String>> handleMBTilesReadException(MBTilesReadException ex) {
         log.error("Ошибка чтения MBTiles: {}", ex.getMessage(), ex);
@@ -0,0 +1,19 @@
+package com.example.mbtiles_spring_App.Exceptions;
+
+import org.imintel.mbtiles4j.MBTilesReadException;
+
+/**
+ * Отказ в чтении из-за перегрузки. Бросается ровно тогда, когда сервер перегружен, поэтому не несёт ни стека,
+ * ни причины: для ответа 503 достаточно сообщения.
+ */
+public class ReadRejectedException extends MBTilesReadException {
+
+    public ReadRejectedException(String message) {
+        super(message, null);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.mbtiles_spring_App.Metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+@Component
+public class TileMetrics {
+
+    public static final String ANY_MAP = "*";
+
+    public enum Lookup {
+        HIT("hit"), MISS("miss"), NOT_FOUND("not_found");
+
+        private final String tag;
+
+        Lookup(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final int MAX_ZOOM_TAGS = 32;
+    private static final Duration MIN_LATENCY = Duration.ofMillis(1);
+    private static final Duration MAX_LATENCY = Duration.ofSeconds(10);
+
+    private final MeterRegistry registry;
+    private final Map<String, MapMeters> maps = new ConcurrentHashMap<>();
+    private final DistributionSummary uploadBytes;
+    private final Timer uploadTime;
+
+    public TileMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.uploadBytes = DistributionSummary.builder("mbtiles.upload.bytes")
+                .description("Размер принятых частей загрузки")
+                .baseUnit("bytes")
+                .register(registry);
+        this.uploadTime = Timer.builder("mbtiles.upload.time")
+                .description("Время приёма частей загрузки")
+                .register(registry);
+    }
+
+    public static String logicalName(String mapName) {
+        if (mapName == null || mapName.isBlank()) {
+            return ANY_MAP;
+        }
+        int separator = mapName.indexOf('!');
+        return separator < 0 ? mapName : mapName.substring(0, separator);
+    }
+
+    public void recordRequest(String mapName, int z, long nanos) {
+        MapMeters meters = meters(mapName);
+        meters.zoom(z).request.record(nanos, TimeUnit.NANOSECONDS);
+        meters.requestLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(String mapName, int z, Lookup lookup) {
+        ZoomMeters zoom = meters(mapName).zoom(z);
+        switch (lookup) {
+            case HIT -> zoom.hits.increment();
+            case MISS -> zoom.misses.increment();
+            case NOT_FOUND -> zoom.notFound.increment();
+        }
+    }
+
+    public void recordSqlite(String mapName, int z, long nanos) {
+        MapMeters meters = meters(mapName);
+        meters.zoom(z).sqlite.record(nanos, TimeUnit.NANOSECONDS);
+        meters.sqliteLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSerialization(String mapName, int bytes, long nanos) {
+        MapMeters meters = meters(mapName);
+        meters.serialization.record(nanos, TimeUnit.NANOSECONDS);
+        meters.bytes.record(bytes);
+    }
+
+    public void recordUpload(long bytes, long nanos) {
+        uploadBytes.record(bytes);
+        uploadTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private MapMeters meters(String mapName) {
+        String name = logicalName(mapName);
+        MapMeters meters = maps.get(name);
+        return meters != null ? meters : maps.computeIfAbsent(name, MapMeters::new);
+    }
+
+    // Гистограммы для перцентилей публикуются только с тегом карты и в ограниченном диапазоне бакетов:
+    // таймеры с тегом зума дают число запросов, сумму и максимум, но без бакетов, иначе рядов было бы карты × зумы × бакеты
+    private Timer histogram(String name, String description, String map) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("map", map)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_LATENCY)
+                .maximumExpectedValue(MAX_LATENCY)
+                .register(registry);
+    }
+
+    private final class MapMeters {
+
+        private final String map;
+        private final Timer requestLatency;
+        private final Timer sqliteLatency;
+        private final Timer serialization;
+        private final DistributionSummary bytes;
+        private final AtomicReferenceArray<ZoomMeters> zooms = new AtomicReferenceArray<>(MAX_ZOOM_TAGS + 1);
+
+        private MapMeters(String map) {
+            this.map = map;
+            this.requestLatency = histogram("mbtiles.tile.request.latency", "Распределение времени обработки запроса тайла", map);
+            this.sqliteLatency = histogram("mbtiles.tile.sqlite.latency", "Распределение времени чтения тайла из SQLite", map);
+            this.serialization = histogram("mbtiles.tile.serialization", "Время записи тела ответа с тайлом", map);
+            this.bytes = DistributionSummary.builder("mbtiles.tile.bytes")
+                    .description("Размер отданных тайлов")
+                    .baseUnit("bytes")
+                    .tag("map", map)
+                    .register(registry);
+        }
+
+        ZoomMeters zoom(int z) {
+            int index = Math.min(Math.max(z, 0), MAX_ZOOM_TAGS);
+            ZoomMeters meters = zooms.get(index);
+            if (meters == null) {
+                zooms.compareAndSet(index, null, new ZoomMeters(map, index == MAX_ZOOM_TAGS ? MAX_ZOOM_TAGS + "+" : String.valueOf(index)));
+                meters = zooms.get(index);
+            }
+            return meters;
+        }
+    }
+
+    private final class ZoomMeters {
+
+        private final Timer request;
+        private final Timer sqlite;
+        private final Counter hits;
+        private final Counter misses;
+        private final Counter notFound;
+
+        private ZoomMeters(String map, String zoom) {
+            this.request = Timer.builder("mbtiles.tile.request")
+                    .description("Время обработки запроса тайла")
+                    .tags("map", map, "zoom", zoom)
+                    .register(registry);
+            this.sqlite = Timer.builder("mbtiles.tile.sqlite")
+                    .description("Время чтения тайла из SQLite")
+                    .tags("map", map, "zoom", zoom)
+                    .register(registry);
+            this.hits = lookups(map, zoom, Lookup.HIT);
+            this.misses = lookups(map, zoom, Lookup.MISS);
+            this.notFound = lookups(map, zoom, Lookup.NOT_FOUND);
+        }
+
+        private Counter lookups(String map, String zoom, Lookup lookup) {
+            return Counter.builder("mbtiles.tile.lookups")
+                    .description("Поиск тайлов: из кэша, из файла, не найден")
+                    .tags("map", map, "zoom", zoom, "result", lookup.tag)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mbtiles_spring_App.Models;
+
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.DTO.MapInfoResponse;
+import org.springframework.http.MediaType;
+
+import java.util.Map;
+
+public final class MapDescriptor {
+
+    private final String mapName;
+    private final MediaType mediaType;
+    private final String contentEncoding;
+    private final boolean deduplicated;
+    private final long loadedAt;
+    private final MapInfoResponse info;
+    private final byte[] infoJson;
+    private final String infoETag;
+    private final String cacheControl;
+    private final Map<Integer, TileRange> coverage;
+
+    public MapDescriptor(String mapName,
+                         MediaType mediaType,
+                         String contentEncoding,
+                         boolean deduplicated,
+                         long loadedAt,
+                         MapInfoResponse info,
+                         byte[] infoJson,
+                         String cacheControl,
+                         Map<Integer, TileRange> coverage) {
+        this.mapName = mapName;
+        this.mediaType = mediaType;
+        this.contentEncoding = contentEncoding;
+        this.deduplicated = deduplicated;
+        this.loadedAt = loadedAt;
+        this.info = info;
+        this.infoJson = infoJson;
+        this.infoETag = ETags.forContent(infoJson);
+        this.cacheControl = cacheControl;
+        this.coverage = Map.copyOf(coverage);
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public boolean isGzipEncoded() {
+        return "gzip".equals(contentEncoding);
+    }
+
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public String getName() {
+        return info.getName();
+    }
+
+    public String getAttribution() {
+        return info.getAttribution();
+    }
+
+    public int getMinZoom() {
+        return info.getMinZoom();
+    }
+
+    public int getMaxZoom() {
+        return info.getMaxZoom();
+    }
+
+    public double getMinLon() {
+        return info.getMinLon();
+    }
+
+    public double getMaxLon() {
+        return info.getMaxLon();
+    }
+
+    public double getMinLat() {
+        return info.getMinLat();
+    }
+
+    public double getMaxLat() {
+        return info.getMaxLat();
+    }
+
+    public byte[] getInfoJson() {
+        return infoJson;
+    }
+
+    public String getInfoETag() {
+        return infoETag;
+    }
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    public Map<Integer, TileRange> getCoverage() {
+        return coverage;
+    }
+
+    public boolean covers(int z, int x, int y) {
+        TileRange range = coverage.get(z);
+        return range != null && range.contains(x, y);
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.mbtiles_spring_App.Models;
+
+public record MapRegisteredEvent(String mapName) {
+}
@@ -0,0 +1,104 @@
+package com.example.mbtiles_spring_App.Models;
+
+public final class PrewarmJob {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, LIMITED, CANCELLED, FAILED
+    }
+
+    private final String mapName;
+    private final long queuedAt;
+    private State state = State.QUEUED;
+    private int minZoom = -1;
+    private int maxZoom = -1;
+    private int zoom = -1;
+    private long tilesTotal;
+    private long tilesScanned;
+    private long tilesCached;
+    private long bytes;
+    private long startedAt;
+    private long finishedAt;
+    private String error;
+
+    public PrewarmJob(String mapName, long queuedAt) {
+        this.mapName = mapName;
+        this.queuedAt = queuedAt;
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized boolean isFinished() {
+        return state != State.QUEUED && state != State.RUNNING;
+    }
+
+    public synchronized int getMinZoom() {
+        return minZoom;
+    }
+
+    public synchronized int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public synchronized int getZoom() {
+        return zoom;
+    }
+
+    public synchronized long getTilesTotal() {
+        return tilesTotal;
+    }
+
+    public synchronized long getTilesScanned() {
+        return tilesScanned;
+    }
+
+    public synchronized long getTilesCached() {
+        return tilesCached;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getStartedAt() {
+        return startedAt;
+    }
+
+    public synchronized long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    public synchronized void started(int minZoom, int maxZoom, long tilesTotal) {
+        this.state = State.RUNNING;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.tilesTotal = tilesTotal;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public synchronized void progress(int zoom, long scanned, long cached, long bytes) {
+        this.zoom = zoom;
+        this.tilesScanned += scanned;
+        this.tilesCached += cached;
+        this.bytes += bytes;
+    }
+
+    public synchronized void finished(State state, String error) {
+        this.state = state;
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+    }
+}
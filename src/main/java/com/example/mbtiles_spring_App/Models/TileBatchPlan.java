@@ -0,0 +1,42 @@
+package com.example.mbtiles_spring_App.Models;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+public final class TileBatchPlan {
+
+    private final String mapName;
+    private final NavigableMap<Integer, TileRange> ranges;
+    private final Map<Integer, Set<Long>> requested;
+
+    public TileBatchPlan(String mapName, NavigableMap<Integer, TileRange> ranges, Map<Integer, Set<Long>> requested) {
+        this.mapName = mapName;
+        this.ranges = ranges;
+        this.requested = requested;
+    }
+
+    public static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public NavigableMap<Integer, TileRange> getRanges() {
+        return ranges;
+    }
+
+    public Set<Long> getRequested(int z) {
+        return requested != null ? requested.getOrDefault(z, Set.of()) : null;
+    }
+
+    public boolean isRequested(int z, int x, int y) {
+        if (requested == null) {
+            return true;
+        }
+        Set<Long> atZoom = requested.get(z);
+        return atZoom != null && atZoom.contains(key(x, y));
+    }
+}
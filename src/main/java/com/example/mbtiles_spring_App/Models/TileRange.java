@@ -0,0 +1,47 @@
+package com.example.mbtiles_spring_App.Models;
+
+public record TileRange(int minX, int maxX, int minY, int maxY) {
+
+    public boolean contains(int x, int y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    public long size() {
+        return (long) (maxX - minX + 1) * (maxY - minY + 1);
+    }
+
+    public TileRange intersect(TileRange other) {
+        int fromX = Math.max(minX, other.minX);
+        int toX = Math.min(maxX, other.maxX);
+        int fromY = Math.max(minY, other.minY);
+        int toY = Math.min(maxY, other.maxY);
+        return fromX <= toX && fromY <= toY ? new TileRange(fromX, toX, fromY, toY) : null;
+    }
+
+    public TileRange union(TileRange other) {
+        return new TileRange(Math.min(minX, other.minX), Math.max(maxX, other.maxX),
+                Math.min(minY, other.minY), Math.max(maxY, other.maxY));
+    }
+
+    public static TileRange forBounds(int z, double minLon, double minLat, double maxLon, double maxLat) {
+        int max = (1 << z) - 1;
+        int fromX = clamp(lonToX(minLon, z), max);
+        int toX = clamp(lonToX(maxLon, z), max);
+        int fromRow = max - clamp(latToY(maxLat, z), max);
+        int toRow = max - clamp(latToY(minLat, z), max);
+        return new TileRange(Math.min(fromX, toX), Math.max(fromX, toX), Math.min(fromRow, toRow), Math.max(fromRow, toRow));
+    }
+
+    private static int lonToX(double lon, int z) {
+        return (int) Math.floor((lon + 180.0) / 360.0 * (1 << z));
+    }
+
+    private static int latToY(double lat, int z) {
+        double radians = Math.toRadians(lat);
+        return (int) Math.floor((1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2 * (1 << z));
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+}
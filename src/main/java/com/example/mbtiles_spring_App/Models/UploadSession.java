@@ -0,0 +1,108 @@
+package com.example.mbtiles_spring_App.Models;
+
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class UploadSession {
+
+    public enum State {
+        RECEIVING, PUBLISHED, FAILED
+    }
+
+    private final String id;
+    private final String mapName;
+    private final long totalBytes;
+    private final Path partFile;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long receivedBytes;
+    private long lastActivity;
+    private int pageSize;
+    private boolean schemaChecked;
+    private State state = State.RECEIVING;
+    private String publishedName;
+    private String error;
+
+    public UploadSession(String id, String mapName, long totalBytes, Path partFile, long receivedBytes, long lastActivity) {
+        this.id = id;
+        this.mapName = mapName;
+        this.totalBytes = totalBytes;
+        this.partFile = partFile;
+        this.receivedBytes = receivedBytes;
+        this.lastActivity = lastActivity;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public Path getPartFile() {
+        return partFile;
+    }
+
+    // Держится на время чтения тела запроса; в отличие от synchronized не закрепляет виртуальный поток за носителем.
+    public ReentrantLock lock() {
+        return lock;
+    }
+
+    public synchronized long getLastActivity() {
+        return lastActivity;
+    }
+
+    public synchronized void touch(long now) {
+        this.lastActivity = now;
+    }
+
+    public synchronized long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public synchronized void setReceivedBytes(long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+
+    public synchronized int getPageSize() {
+        return pageSize;
+    }
+
+    public synchronized void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public synchronized boolean isSchemaChecked() {
+        return schemaChecked;
+    }
+
+    public synchronized void setSchemaChecked(boolean schemaChecked) {
+        this.schemaChecked = schemaChecked;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized String getPublishedName() {
+        return publishedName;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    public synchronized void published(String publishedName) {
+        this.state = State.PUBLISHED;
+        this.publishedName = publishedName;
+    }
+
+    public synchronized void failed(String error) {
+        this.state = State.FAILED;
+        this.error = error;
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+public record ArchiveInfo(long tiles, long blobs, long bytes) {
+}
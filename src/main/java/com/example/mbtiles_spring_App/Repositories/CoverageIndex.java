@@ -0,0 +1,101 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.imintel.mbtiles4j.MBTilesReadException;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+final class CoverageIndex {
+
+    private static final String COVERAGE_SQL = "SELECT zoom_level, MIN(tile_column), MAX(tile_column), MIN(tile_row), MAX(tile_row) "
+            + "FROM tiles GROUP BY zoom_level";
+
+    private static final Comparator<MapDescriptor> PRIORITY = Comparator
+            .comparingLong(MapDescriptor::getLoadedAt).reversed()
+            .thenComparing(MapDescriptor::getMapName);
+
+    private final Map<String, MapDescriptor> maps = new HashMap<>();
+    private volatile Map<Integer, List<MapDescriptor>> byZoom = Map.of();
+
+    static Map<Integer, TileRange> scan(File file) throws MBTilesReadException {
+        try (Connection connection = MetadataTable.openReadOnly(file)) {
+            return scan(connection, file);
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось построить индекс покрытия для " + file.getName(), e);
+        }
+    }
+
+    static Map<Integer, TileRange> scan(Connection connection, File file) throws MBTilesReadException {
+        Map<Integer, TileRange> coverage = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(COVERAGE_SQL)) {
+            while (rs.next()) {
+                coverage.put(rs.getInt(1), new TileRange(rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)));
+            }
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось построить индекс покрытия для " + file.getName(), e);
+        }
+        return coverage;
+    }
+
+    List<MapDescriptor> candidates(int z, int x, int y) {
+        List<MapDescriptor> atZoom = byZoom.get(z);
+        if (atZoom == null) {
+            return List.of();
+        }
+        List<MapDescriptor> result = null;
+        for (MapDescriptor descriptor : atZoom) {
+            if (descriptor.covers(z, x, y)) {
+                if (result == null) {
+                    result = new ArrayList<>(2);
+                }
+                result.add(descriptor);
+            }
+        }
+        return result != null ? result : List.of();
+    }
+
+    synchronized void add(MapDescriptor descriptor) {
+        maps.put(descriptor.getMapName(), descriptor);
+        rebuild();
+    }
+
+    synchronized void replace(String previousName, MapDescriptor descriptor) {
+        if (previousName != null) {
+            maps.remove(previousName);
+        }
+        maps.put(descriptor.getMapName(), descriptor);
+        rebuild();
+    }
+
+    synchronized void remove(String mapName) {
+        if (maps.remove(mapName) != null) {
+            rebuild();
+        }
+    }
+
+    synchronized void clear() {
+        maps.clear();
+        rebuild();
+    }
+
+    private void rebuild() {
+        Map<Integer, List<MapDescriptor>> index = new HashMap<>();
+        for (MapDescriptor descriptor : maps.values()) {
+            for (Integer zoom : descriptor.getCoverage().keySet()) {
+                index.computeIfAbsent(zoom, z -> new ArrayList<>()).add(descriptor);
+            }
+        }
+        index.replaceAll((zoom, list) -> {
+            list.sort(PRIORITY);
+            return List.copyOf(list);
+        });
+        byZoom = Map.copyOf(index);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.HttpCacheProperties;
+import com.example.mbtiles_spring_App.DTO.MapInfoResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+public class MapDescriptorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(MapDescriptorFactory.class);
+    private static final Set<String> VECTOR_FORMATS = Set.of("pbf", "mvt");
+    private static final MediaType VECTOR_TILE = MediaType.parseMediaType("application/x-protobuf");
+
+    private final ObjectMapper objectMapper;
+    private final HttpCacheProperties httpCacheProperties;
+
+    public MapDescriptorFactory(ObjectMapper objectMapper, HttpCacheProperties httpCacheProperties) {
+        this.objectMapper = objectMapper;
+        this.httpCacheProperties = httpCacheProperties;
+    }
+
+    public MapDescriptor build(String mapName, File file, long loadedAt) throws MBTilesReadException {
+        log.debug("Чтение метаданных карты '{}'", mapName);
+        // Покрытие, метаданные, схема и первый тайл читаются через одно соединение только для чтения
+        try (Connection connection = MetadataTable.openReadOnly(file)) {
+            return build(mapName, file, loadedAt, connection);
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось открыть карту " + file.getName(), e);
+        }
+    }
+
+    private MapDescriptor build(String mapName, File file, long loadedAt, Connection connection) throws MBTilesReadException {
+        Map<Integer, TileRange> coverage = CoverageIndex.scan(connection, file);
+        Map<String, String> rawMetadata = MetadataTable.read(connection, file);
+        boolean deduplicated = MetadataTable.isDeduplicated(connection, file);
+        String tileSetName = rawMetadata.get("name");
+        double[] bounds = bounds(mapName, rawMetadata.get("bounds"));
+
+        // В информации о карте растровый формат остаётся коротким именем ("png" или "jpg"), как было у mbtiles4j
+        String format = rawMetadata.getOrDefault("format", "").trim().toLowerCase();
+        boolean vector = VECTOR_FORMATS.contains(format);
+        MediaType mediaType;
+        String tileMimeType;
+        if (vector) {
+            mediaType = VECTOR_TILE;
+            tileMimeType = VECTOR_TILE.toString();
+        } else if (format.equals("png")) {
+            mediaType = MediaType.IMAGE_PNG;
+            tileMimeType = "png";
+        } else if (format.equals("jpg") || format.equals("jpeg")) {
+            mediaType = MediaType.IMAGE_JPEG;
+            tileMimeType = "jpg";
+        } else {
+            mediaType = MediaType.APPLICATION_OCTET_STREAM;
+            tileMimeType = "";
+        }
+        String contentEncoding = vector && isGzipCompressed(rawMetadata, connection, file) ? "gzip" : null;
+
+        MapInfoResponse info = new MapInfoResponse(tileSetName,
+                rawMetadata.get("attribution"),
+                tileSetName,
+                tileMimeType,
+                coverage.keySet().stream().mapToInt(Integer::intValue).min().orElse(-1),
+                coverage.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1),
+                bounds[0],
+                bounds[2],
+                bounds[1],
+                bounds[3]);
+
+        try {
+            return new MapDescriptor(mapName, mediaType, contentEncoding, deduplicated, loadedAt, info,
+                    objectMapper.writeValueAsBytes(info), httpCacheProperties.cacheControlFor(mapName), coverage);
+        } catch (JsonProcessingException e) {
+            throw new MBTilesReadException("Не удалось сериализовать информацию о карте " + mapName, e);
+        }
+    }
+
+    // bounds - необязательный ключ вида "left,bottom,right,top"; без него или при ошибке в значении границы нулевые
+    private static double[] bounds(String mapName, String value) {
+        double[] bounds = new double[4];
+        if (value == null || value.isBlank()) {
+            return bounds;
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            log.warn("Некорректные границы карты '{}': {}", mapName, value);
+            return bounds;
+        }
+        try {
+            for (int i = 0; i < 4; i++) {
+                bounds[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Некорректные границы карты '{}': {}", mapName, value);
+            return new double[4];
+        }
+        return bounds;
+    }
+
+    private boolean isGzipCompressed(Map<String, String> rawMetadata, Connection connection, File file) throws MBTilesReadException {
+        String compression = rawMetadata.get("compression");
+        if (compression != null) {
+            return compression.equalsIgnoreCase("gzip");
+        }
+        return MetadataTable.firstTileIsGzip(connection, file);
+    }
+}
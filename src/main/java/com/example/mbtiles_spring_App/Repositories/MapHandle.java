@@ -0,0 +1,122 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+final class MapHandle {
+
+    private final String mapName;
+    private final File file;
+    private final long loadedAt;
+    private final long fileModified;
+    private final RefCount refs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean filterClaimed = new AtomicBoolean();
+    private final AtomicBoolean describeClaimed = new AtomicBoolean();
+    private volatile MapDescriptor descriptor;
+    private volatile TileFilter filter;
+    private volatile TileReadPool pool;
+    private volatile TileArchive archive;
+    private volatile long lastAccess;
+
+    MapHandle(String mapName, File file, long loadedAt, Consumer<MapHandle> onDrained) {
+        this.mapName = mapName;
+        this.file = file;
+        this.loadedAt = loadedAt;
+        this.fileModified = file.lastModified();
+        this.refs = new RefCount(() -> onDrained.accept(this));
+    }
+
+    // Под этой блокировкой открываются файлы; в отличие от synchronized она не закрепляет виртуальный поток за носителем.
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    boolean tryAcquire() {
+        return refs.retain();
+    }
+
+    void release() {
+        refs.release();
+    }
+
+    void retire() {
+        refs.retire();
+    }
+
+    boolean isRetired() {
+        return refs.isRetired();
+    }
+
+    int getInFlight() {
+        return refs.inFlight();
+    }
+
+    String getMapName() {
+        return mapName;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getLoadedAt() {
+        return loadedAt;
+    }
+
+    long getFileModified() {
+        return fileModified;
+    }
+
+    MapDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    void setDescriptor(MapDescriptor descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    TileFilter getFilter() {
+        return filter;
+    }
+
+    void setFilter(TileFilter filter) {
+        this.filter = filter;
+    }
+
+    boolean claimFilterBuild() {
+        return filterClaimed.compareAndSet(false, true);
+    }
+
+    boolean claimDescribe() {
+        return describeClaimed.compareAndSet(false, true);
+    }
+
+    TileReadPool getPool() {
+        return pool;
+    }
+
+    void setPool(TileReadPool pool) {
+        this.pool = pool;
+    }
+
+    TileArchive getArchive() {
+        return archive;
+    }
+
+    void setArchive(TileArchive archive) {
+        this.archive = archive;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+}
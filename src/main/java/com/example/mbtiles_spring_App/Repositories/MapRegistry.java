@@ -0,0 +1,130 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class MapRegistry {
+
+    private static final Comparator<MapHandle> NEWEST_FIRST = Comparator.comparingLong(MapHandle::getLoadedAt).reversed()
+            .thenComparing(MapHandle::getMapName, Comparator.reverseOrder());
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of(), Map.of());
+
+    static String logicalName(String mapName) {
+        int separator = mapName.indexOf('!');
+        return separator < 0 ? mapName : mapName.substring(0, separator);
+    }
+
+    MapHandle resolve(String name) {
+        return snapshot.byName().get(name);
+    }
+
+    MapHandle version(String mapName) {
+        return snapshot.versions().get(mapName);
+    }
+
+    MapHandle current(String logicalName) {
+        return snapshot.aliases().get(logicalName);
+    }
+
+    boolean isCurrent(MapHandle handle) {
+        return snapshot.aliases().get(logicalName(handle.getMapName())) == handle;
+    }
+
+    Map<String, MapHandle> aliases() {
+        return snapshot.aliases();
+    }
+
+    Collection<MapHandle> handles() {
+        return snapshot.versions().values();
+    }
+
+    List<String> versionKeys() {
+        return new ArrayList<>(snapshot.versions().keySet());
+    }
+
+    List<MapHandle> history(String logicalName) {
+        return snapshot.history().getOrDefault(logicalName, List.of());
+    }
+
+    int size() {
+        return snapshot.versions().size();
+    }
+
+    synchronized boolean add(MapHandle handle) {
+        Snapshot current = snapshot;
+        if (current.versions().containsKey(handle.getMapName())) {
+            return false;
+        }
+        Map<String, MapHandle> versions = new HashMap<>(current.versions());
+        versions.put(handle.getMapName(), handle);
+        Map<String, MapHandle> aliases = new HashMap<>(current.aliases());
+        String logicalName = logicalName(handle.getMapName());
+        MapHandle previous = aliases.get(logicalName);
+        if (previous == null || NEWEST_FIRST.compare(handle, previous) < 0) {
+            aliases.put(logicalName, handle);
+        }
+        snapshot = build(versions, aliases);
+        return true;
+    }
+
+    synchronized boolean promote(String mapName) {
+        Snapshot current = snapshot;
+        MapHandle handle = current.versions().get(mapName);
+        if (handle == null) {
+            return false;
+        }
+        Map<String, MapHandle> aliases = new HashMap<>(current.aliases());
+        aliases.put(logicalName(mapName), handle);
+        snapshot = build(current.versions(), aliases);
+        return true;
+    }
+
+    synchronized boolean remove(MapHandle handle) {
+        Snapshot current = snapshot;
+        if (current.versions().get(handle.getMapName()) != handle) {
+            return false;
+        }
+        Map<String, MapHandle> versions = new HashMap<>(current.versions());
+        versions.remove(handle.getMapName());
+        Map<String, MapHandle> aliases = new HashMap<>(current.aliases());
+        String logicalName = logicalName(handle.getMapName());
+        if (aliases.get(logicalName) == handle) {
+            aliases.remove(logicalName);
+            versions.values().stream()
+                    .filter(candidate -> logicalName(candidate.getMapName()).equals(logicalName))
+                    .min(NEWEST_FIRST)
+                    .ifPresent(candidate -> aliases.put(logicalName, candidate));
+        }
+        snapshot = build(versions, aliases);
+        return true;
+    }
+
+    synchronized void clear() {
+        snapshot = new Snapshot(Map.of(), Map.of(), Map.of(), Map.of());
+    }
+
+    private static Snapshot build(Map<String, MapHandle> versions, Map<String, MapHandle> aliases) {
+        Map<String, MapHandle> byName = new HashMap<>(versions);
+        byName.putAll(aliases);
+        Map<String, List<MapHandle>> history = new HashMap<>();
+        for (MapHandle handle : versions.values()) {
+            history.computeIfAbsent(logicalName(handle.getMapName()), name -> new ArrayList<>()).add(handle);
+        }
+        history.replaceAll((name, handles) -> {
+            handles.sort(NEWEST_FIRST);
+            return List.copyOf(handles);
+        });
+        return new Snapshot(Map.copyOf(byName), Map.copyOf(versions), Map.copyOf(aliases), Map.copyOf(history));
+    }
+
+    private record Snapshot(Map<String, MapHandle> byName,
+                            Map<String, MapHandle> versions,
+                            Map<String, MapHandle> aliases,
+                            Map<String, List<MapHandle>> history) {
+    }
+}
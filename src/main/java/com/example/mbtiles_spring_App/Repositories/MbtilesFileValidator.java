@@ -0,0 +1,69 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.sqlite.SQLiteConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public final class MbtilesFileValidator {
+
+    public static final int HEADER_SIZE = 100;
+    public static final Set<String> REQUIRED_TABLES = Set.of("tiles", "metadata");
+
+    private static final byte[] MAGIC = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+
+    private MbtilesFileValidator() {
+    }
+
+    public static int validateHeader(byte[] header) throws MBTilesReadException {
+        if (header.length < HEADER_SIZE || !Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new MBTilesReadException("Файл не является базой SQLite", new RuntimeException());
+        }
+        int pageSize = ((header[16] & 0xff) << 8) | (header[17] & 0xff);
+        if (pageSize == 1) {
+            pageSize = 65536;
+        }
+        if (pageSize < 512 || Integer.bitCount(pageSize) != 1) {
+            throw new MBTilesReadException("Некорректный размер страницы SQLite: " + pageSize, new RuntimeException());
+        }
+        return pageSize;
+    }
+
+    public static int validateHeader(Path file) throws MBTilesReadException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file)) {
+            header = in.readNBytes(HEADER_SIZE);
+        } catch (IOException e) {
+            throw new MBTilesReadException("Не удалось прочитать заголовок " + file.getFileName(), e);
+        }
+        return validateHeader(header);
+    }
+
+    public static Set<String> findMissingTables(Path file) throws MBTilesReadException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Set<String> missing = new HashSet<>(REQUIRED_TABLES);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath(), config.toProperties());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM sqlite_master WHERE type IN ('table', 'view')")) {
+            while (rs.next()) {
+                missing.remove(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось прочитать схему " + file.getFileName(), e);
+        }
+        return missing;
+    }
+}
@@ -1,27 +1,53 @@
 package com.example.mbtiles_spring_App.Repositories;
 
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.Caches.SingleFlight;
+import com.example.mbtiles_spring_App.Caches.TileCache;
+import com.example.mbtiles_spring_App.Caches.TileKey;
+import com.example.mbtiles_spring_App.Configuration.SqliteReadProperties;
+import com.example.mbtiles_spring_App.DTO.MapVersionsResponse;
 import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.MapRegisteredEvent;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.example.mbtiles_spring_App.Metrics.TileMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.imintel.mbtiles4j.*;
-import org.imintel.mbtiles4j.model.MetadataBounds;
-import org.imintel.mbtiles4j.model.MetadataEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Repository
 public class MbtilesRepository {
 
     private static final Logger log = LoggerFactory.getLogger(MbtilesRepository.class);
     private static final int MB = 1048576;
+    private static final int SCAN_CHUNK_TILES = 256;
+    private static final Pattern VERSIONED_NAME = Pattern.compile(".+!(\\d+)");
 
     @Value("${mbtiles.map.storage.dir}")
     private String mapStorageDir;
@@ -29,26 +55,116 @@ public class MbtilesRepository {
     @Value("${mbtiles.max-file-size}")
     private long maxFileSize;
 
-    private final Map<String, MBTilesReader> loadedMaps = new ConcurrentHashMap<>();
+    @Value("${mbtiles.startup.preload-metadata:true}")
+    private boolean preloadMetadata;
 
+    @Value("${mbtiles.tile-filter.enabled:true}")
+    private boolean tileFilterEnabled;
+
+    @Value("${mbtiles.tile-filter.false-positive-rate:0.01}")
+    private double tileFilterFalsePositiveRate;
+
+    @Value("${mbtiles.tile-filter.exact-max-bits:16777216}")
+    private long tileFilterExactMaxBits;
+
+    @Value("${mbtiles.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    private final MapRegistry registry = new MapRegistry();
+    private final Set<MapHandle> undescribed = ConcurrentHashMap.newKeySet();
+    private final CoverageIndex coverageIndex = new CoverageIndex();
+    private final TileCache tileCache;
+    private final MapDescriptorFactory descriptorFactory;
+    private final OpenReaders openReaders;
+    private final ExecutorService startupExecutor;
+    private final SingleFlight<TileKey, TileResponse> tileLoads;
+    private final TileMetrics tileMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LongAdder liveRequests = new LongAdder();
+
+    public MbtilesRepository(TileCache tileCache,
+                             MapDescriptorFactory descriptorFactory,
+                             SqliteReadProperties sqliteReadProperties,
+                             TileMetrics tileMetrics,
+                             MeterRegistry meterRegistry,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${mbtiles.reader.max-open:64}") int maxOpenReaders,
+                             @Value("${mbtiles.startup.parallelism:0}") int startupParallelism,
+                             @Value("${mbtiles.coalescing.enabled:true}") boolean coalescingEnabled) {
+        this.tileCache = tileCache;
+        this.tileMetrics = tileMetrics;
+        this.eventPublisher = eventPublisher;
+        this.descriptorFactory = descriptorFactory;
+        this.openReaders = new OpenReaders(sqliteReadProperties, maxOpenReaders);
+        this.tileLoads = new SingleFlight<>(coalescingEnabled);
+        FunctionCounter.builder("mbtiles.tile.loads", tileLoads, SingleFlight::getLoads)
+                .description("Чтения тайлов, выполненные из файла")
+                .register(meterRegistry);
+        FunctionCounter.builder("mbtiles.tile.loads.coalesced", tileLoads, SingleFlight::getCoalesced)
+                .description("Запросы тайлов, присоединённые к уже выполняющемуся чтению")
+                .register(meterRegistry);
+        Gauge.builder("mbtiles.readers.open", openReaders, OpenReaders::size)
+                .description("Открытые пулы соединений с файлами карт")
+                .register(meterRegistry);
+        Gauge.builder("mbtiles.maps.loaded", registry, MapRegistry::size)
+                .description("Загруженные версии карт")
+                .register(meterRegistry);
+        int threads = startupParallelism > 0 ? startupParallelism : Runtime.getRuntime().availableProcessors();
+        this.startupExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     @PostConstruct
     public void scanningForMaps() throws MBTilesReadException {
         log.info("Сканирование директории '{}' на наличие .mbtiles файлов...", mapStorageDir);
-        File[] files = new File(mapStorageDir).listFiles();
+        File[] files = getStorageDir().toFile().listFiles();
         if (files == null) {
             log.warn("Директория '{}' не существует или пуста.", mapStorageDir);
             return;
         }
 
+        List<File> candidates = new ArrayList<>();
+        List<Future<Integer>> headers = new ArrayList<>();
         for (File file : files) {
             if (!file.getName().endsWith(".mbtiles")) continue;
+            candidates.add(file);
+            headers.add(startupExecutor.submit(() -> MbtilesFileValidator.validateHeader(file.toPath())));
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            File file = candidates.get(i);
+            try {
+                headers.get(i).get();
+            } catch (ExecutionException e) {
+                log.error("Файл '{}' пропущен: {}", file.getName(), e.getCause().getMessage());
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MBTilesReadException("Сканирование карт прервано", e);
+            }
             String originalName = file.getName();
-            String formattedName = originalName.substring(0, originalName.indexOf(".")) + "!" + System.currentTimeMillis();
-            loadedMaps.put(formattedName, new MBTilesReader(file));
-            log.info("Файл '{}' загружен как '{}'", originalName, formattedName);
+            String formattedName = baseName(file.toPath());
+            long loadedAt;
+            Matcher versioned = VERSIONED_NAME.matcher(formattedName);
+            if (versioned.matches()) {
+                loadedAt = Long.parseLong(versioned.group(1));
+            } else {
+                loadedAt = System.currentTimeMillis();
+                formattedName = formattedName + "!" + loadedAt;
+            }
+            MapHandle handle = new MapHandle(formattedName, file, loadedAt, this::dispose);
+            if (register(handle)) {
+                log.info("Файл '{}' зарегистрирован как '{}'", originalName, formattedName);
+            }
+        }
+        log.info("Сканирование завершено. Зарегистрировано {} карт.", registry.size());
+
+        if (preloadMetadata) {
+            describeLater();
         }
-        log.info("Сканирование завершено. Загружено {} карт.", loadedMaps.size());
     }
 
     public void save(MultipartFile file, String fileName) throws IOException, MBTilesReadException {
@@ -61,14 +177,15 @@ public class MbtilesRepository {
             log.warn("Файл '{}' имеет неверный формат", file.getOriginalFilename());
             throw new IOException("Invalid file format");
         }
-        String uploadDir = System.getProperty("user.dir") + File.separator + mapStorageDir;
+        String uploadDir = getStorageDir().toString();
         File dir = new File(uploadDir);
         if (!dir.exists() && !dir.mkdirs()) {
             log.error("Не удалось создать директорию '{}'", uploadDir);
             throw new IOException("Failed to create upload directory");
         }
 
-        String systemFileName = fileName + "!" + System.currentTimeMillis();
+        long loadedAt = System.currentTimeMillis();
+        String systemFileName = fileName + "!" + loadedAt;
         String filePath = uploadDir + File.separator + systemFileName + ".mbtiles";
 
         File newFile = new File(filePath);
@@ -79,131 +196,731 @@ public class MbtilesRepository {
             throw new IOException("Failed to save file");
         }
 
-        loadedMaps.putIfAbsent(systemFileName, new MBTilesReader(newFile));
+        if (!MbtilesFileValidator.findMissingTables(newFile.toPath()).isEmpty()) {
+            log.warn("Файл '{}' не содержит таблиц MBTiles", file.getOriginalFilename());
+            Files.deleteIfExists(newFile.toPath());
+            throw new IOException("Invalid file format");
+        }
+
+        describe(registerNew(new MapHandle(systemFileName, newFile, loadedAt, this::dispose)));
         log.info("Файл '{}' успешно загружен как '{}'", file.getOriginalFilename(), systemFileName);
+        eventPublisher.publishEvent(new MapRegisteredEvent(systemFileName));
     }
 
-    public Optional<List<String>> getMapsList() {
-        log.debug("Запрос списка загруженных карт");
-        return Optional.of(new ArrayList<>(loadedMaps.keySet()));
+    public Path getStorageDir() {
+        return Paths.get(System.getProperty("user.dir")).resolve(mapStorageDir);
     }
 
-    public Optional<MetadataBounds> getTileSetBounds(String mapName) {
-        return Optional.ofNullable(loadedMaps.get(mapName)).map(reader -> {
-            log.debug("Получение границ тайлов для карты '{}'", mapName);
-            try {
-                return reader.getMetadata().getTilesetBounds();
-            } catch (MBTilesReadException e) {
-                throw new RuntimeException("Границ тайлов для карты не найдены");
+    public String publish(String mapName, Path validatedFile) throws IOException, MBTilesReadException {
+        Path dir = getStorageDir();
+        Files.createDirectories(dir);
+        long loadedAt = System.currentTimeMillis();
+        String systemFileName = mapName + "!" + loadedAt;
+        Path target = dir.resolve(systemFileName + ".mbtiles");
+        Files.move(validatedFile, target, StandardCopyOption.ATOMIC_MOVE);
+        boolean registered = false;
+        try {
+            describe(registerNew(new MapHandle(systemFileName, target.toFile(), loadedAt, this::dispose)));
+            registered = true;
+        } finally {
+            if (!registered) {
+                // Иначе файл, который не удалось подключить, остался бы в каталоге карт и подхватывался бы при каждом сканировании
+                if (registry.resolve(systemFileName) != null) {
+                    close(systemFileName);
+                }
+                Files.deleteIfExists(target);
+                TileFilter.deleteSidecar(target.toFile());
+                TileArchive.deleteSidecar(target.toFile());
+                log.warn("Публикация '{}' отменена, файл удалён из каталога карт", systemFileName);
             }
-        });
+        }
+        log.info("Файл '{}' опубликован как '{}'", validatedFile.getFileName(), systemFileName);
+        eventPublisher.publishEvent(new MapRegisteredEvent(systemFileName));
+        return systemFileName;
     }
 
-    public Optional<String> getAttribution(String mapName) {
-        return Optional.ofNullable(loadedMaps.get(mapName)).map(reader -> {
-            log.debug("Получение атрибуции для карты '{}'", mapName);
-            try {
-                return reader.getMetadata().getAttribution();
-            } catch (MBTilesReadException e) {
-                throw new RuntimeException("Атрибуции для карты не найдены ");
+    public boolean isLoaded(Path file) {
+        MapHandle handle = findByFile(file);
+        return handle != null && handle.getFileModified() == file.toFile().lastModified();
+    }
+
+    public String reload(Path file) throws MBTilesReadException {
+        long loadedAt = System.currentTimeMillis();
+        String logicalName = MapRegistry.logicalName(baseName(file));
+        String mapName = logicalName + "!" + loadedAt;
+        MapHandle handle = new MapHandle(mapName, file.toFile(), loadedAt, this::dispose);
+        handle.setDescriptor(prepare(handle));
+
+        MapHandle previous;
+        synchronized (registry) {
+            previous = findByFile(file);
+            MapHandle before = registry.current(logicalName);
+            if (!registry.add(handle)) {
+                throw new MBTilesReadException(new RuntimeException("Карта " + mapName + " уже загружена"));
             }
-        });
+            if (previous != null && !registry.remove(previous)) {
+                previous = null;
+            }
+            registry.promote(mapName);
+            syncCoverage(logicalName, before);
+        }
+        if (previous != null) {
+            undescribed.remove(previous);
+            previous.retire();
+            log.info("Карта '{}' заменена версией '{}'", previous.getMapName(), mapName);
+        } else {
+            log.info("Файл '{}' загружен как '{}'", file.getFileName(), mapName);
+        }
+        eventPublisher.publishEvent(new MapRegisteredEvent(mapName));
+        return mapName;
     }
 
-    public Optional<String> getTileSetName(String mapName) {
-        return Optional.ofNullable(loadedMaps.get(mapName)).map(reader -> {
-            log.debug("Получение имени тайлсета карты '{}'", mapName);
-            try {
-                return reader.getMetadata().getTilesetName();
-            } catch (MBTilesReadException e) {
-                throw new RuntimeException("Имя тайлсета карты не найдено");
+    public Optional<String> unload(Path file) {
+        MapHandle handle = findByFile(file);
+        if (handle == null) {
+            return Optional.empty();
+        }
+        close(handle.getMapName());
+        if (!handle.getFile().exists()) {
+            TileFilter.deleteSidecar(handle.getFile());
+            TileArchive.deleteSidecar(handle.getFile());
+        }
+        return Optional.of(handle.getMapName());
+    }
+
+    public Optional<String> findMapName(Path file) {
+        return Optional.ofNullable(findByFile(file)).map(MapHandle::getMapName);
+    }
+
+    public List<Path> getLoadedFiles() {
+        List<Path> files = new ArrayList<>(registry.size());
+        for (MapHandle handle : registry.handles()) {
+            files.add(handle.getFile().toPath());
+        }
+        return files;
+    }
+
+    private MapHandle findByFile(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        for (MapHandle handle : registry.handles()) {
+            if (handle.getFile().toPath().toAbsolutePath().normalize().equals(normalized)) {
+                return handle;
             }
-        });
+        }
+        return null;
     }
 
-    public Optional<MetadataEntry.TileMimeType> getTileMimeType(String mapName) {
-        return Optional.ofNullable(loadedMaps.get(mapName)).map(reader -> {
-            log.debug("Получение типа тайла для карты '{}'", mapName);
-            try {
-                return reader.getMetadata().getTileMimeType();
-            } catch (MBTilesReadException e) {
-                throw new RuntimeException("Тип тайла карты не найден");
+    private static String baseName(Path file) {
+        String fileName = file.getFileName().toString();
+        int extension = fileName.endsWith(".mbtiles") ? fileName.length() - ".mbtiles".length() : fileName.lastIndexOf('.');
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    private boolean register(MapHandle handle) {
+        String logicalName = MapRegistry.logicalName(handle.getMapName());
+        synchronized (registry) {
+            MapHandle before = registry.current(logicalName);
+            if (!registry.add(handle)) {
+                return false;
             }
-        });
+            undescribed.add(handle);
+            syncCoverage(logicalName, before);
+        }
+        return true;
+    }
+
+    private void syncCoverage(String logicalName, MapHandle before) {
+        MapHandle after = registry.current(logicalName);
+        if (after == before) {
+            return;
+        }
+        MapDescriptor descriptor = after != null ? after.getDescriptor() : null;
+        if (descriptor != null) {
+            coverageIndex.replace(before != null ? before.getMapName() : null, descriptor);
+        } else if (before != null) {
+            coverageIndex.remove(before.getMapName());
+        }
     }
 
-    public Optional<Integer> getMinZoom(String mapName) {
-        return Optional.ofNullable(loadedMaps.get(mapName)).map(reader -> {
-            log.debug("Получение минимального масштаба для карты '{}'", mapName);
+    private MapHandle registerNew(MapHandle handle) throws MBTilesReadException {
+        if (!register(handle)) {
+            throw new MBTilesReadException(new RuntimeException("Карта " + handle.getMapName() + " уже загружена"));
+        }
+        return handle;
+    }
+
+    private MapDescriptor describe(MapHandle handle) throws MBTilesReadException {
+        MapDescriptor descriptor = handle.getDescriptor();
+        if (descriptor != null) {
+            return descriptor;
+        }
+        handle.lock().lock();
+        try {
+            descriptor = handle.getDescriptor();
+            if (descriptor == null) {
+                try {
+                    descriptor = prepare(handle);
+                } catch (RuntimeException e) {
+                    // Битые метаданные не должны превращаться в 500 на каждом запросе: это ошибка чтения именно этой карты
+                    throw new MBTilesReadException("Не удалось прочитать метаданные карты " + handle.getMapName(), e);
+                }
+                handle.setDescriptor(descriptor);
+                synchronized (registry) {
+                    if (registry.isCurrent(handle)) {
+                        coverageIndex.add(descriptor);
+                    }
+                }
+                undescribed.remove(handle);
+            }
+        } finally {
+            handle.lock().unlock();
+        }
+        return descriptor;
+    }
+
+    private MapDescriptor prepare(MapHandle handle) throws MBTilesReadException {
+        MapDescriptor descriptor = descriptorFactory.build(handle.getMapName(), handle.getFile(), handle.getLoadedAt());
+        if (tileFilterEnabled) {
+            handle.setFilter(TileFilter.load(handle.getFile()));
+        }
+        if (archiveEnabled) {
             try {
-                return reader.getMinZoom();
-            } catch (MBTilesReadException e) {
-                throw new RuntimeException("Минимальный маштаб карты не найден");
+                TileArchive archive = TileArchive.openIfFresh(handle.getFile());
+                if (archive != null) {
+                    handle.setArchive(archive);
+                    log.info("Карта '{}' читается из архива тайлов: {} тайлов", handle.getMapName(), archive.getEntries());
+                }
+            } catch (IOException e) {
+                log.warn("Карта '{}' будет читаться из SQLite, архив тайлов недоступен: {}", handle.getMapName(), e.getMessage());
             }
-        });
+        }
+        return descriptor;
+    }
+
+    private static boolean mightContain(MapHandle handle, MapDescriptor descriptor, int z, int x, int y) {
+        TileFilter filter = handle.getFilter();
+        return filter != null ? filter.mightContain(z, x, y) : descriptor.covers(z, x, y);
+    }
+
+    // Фильтр строится полным проходом по таблице тайлов, поэтому не при загрузке карты, а в фоне после первого промаха;
+    // до его появления промахи отсекаются только по покрытию
+    private void buildFilterLater(MapHandle handle, MapDescriptor descriptor) {
+        if (!tileFilterEnabled || handle.getFilter() != null || !handle.claimFilterBuild()) {
+            return;
+        }
+        try {
+            startupExecutor.execute(() -> {
+                if (handle.isRetired()) {
+                    return;
+                }
+                try {
+                    handle.setFilter(TileFilter.buildAndSave(handle.getFile(), descriptor.getCoverage(),
+                            tileFilterFalsePositiveRate, tileFilterExactMaxBits));
+                } catch (MBTilesReadException e) {
+                    log.warn("Карта '{}' будет работать без фильтра тайлов: {}", handle.getMapName(), e.getMessage());
+                }
+                if (handle.isRetired() && !handle.getFile().exists()) {
+                    TileFilter.deleteSidecar(handle.getFile());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Фильтр тайлов карты '{}' не построен: приложение останавливается", handle.getMapName());
+        }
     }
 
-    public Optional<Integer> getMaxZoom(String mapName) {
-        return Optional.ofNullable(loadedMaps.get(mapName)).map(reader -> {
-            log.debug("Получение максимального масштаба для карты '{}'", mapName);
+    // Запрос без имени карты не открывает карты в своём потоке: неописанные карты описываются в фоне,
+    // а до этого тайл ищется только среди уже описанных
+    private void describeLater() {
+        for (MapHandle handle : undescribed) {
+            if (!handle.claimDescribe()) {
+                continue;
+            }
             try {
-                return reader.getMaxZoom();
-            } catch (MBTilesReadException e) {
-                throw new RuntimeException("Максимальный масштаб карты не найден");
+                startupExecutor.execute(() -> {
+                    if (!handle.isRetired()) {
+                        describeQuietly(handle);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.debug("Карта '{}' не описана: приложение останавливается", handle.getMapName());
+                return;
             }
-        });
+        }
+    }
+
+    private void describeQuietly(MapHandle handle) {
+        try {
+            describe(handle);
+        } catch (MBTilesReadException e) {
+            undescribed.remove(handle);
+            log.error("Не удалось прочитать метаданные карты '{}'", handle.getMapName(), e);
+        }
+    }
+
+    private MapHandle lease(String mapName) {
+        for (;;) {
+            MapHandle handle = registry.resolve(mapName);
+            if (handle == null || handle.tryAcquire()) {
+                return handle;
+            }
+            if (registry.resolve(mapName) == handle) {
+                return null;
+            }
+        }
+    }
+
+    private MapHandle require(String mapName) throws MBTilesReadException {
+        MapHandle handle = lease(mapName);
+        if (handle == null) {
+            log.warn("Карта '{}' не найдена", mapName);
+            throw new MBTilesReadException(new RuntimeException("Карта не найдена"));
+        }
+        return handle;
+    }
+
+    private StoredTile readTile(MapHandle handle, int z, int x, int y) throws MBTilesReadException {
+        MapDescriptor descriptor = describe(handle);
+        if (!mightContain(handle, descriptor, z, x, y)) {
+            return null;
+        }
+        TileReadPool pool = openReaders.acquire(handle, descriptor.isDeduplicated());
+        long started = System.nanoTime();
+        try {
+            StoredTile stored = pool.readTile(z, x, y);
+            if (stored == null) {
+                buildFilterLater(handle, descriptor);
+            }
+            return stored;
+        } finally {
+            pool.release();
+            tileMetrics.recordSqlite(handle.getMapName(), z, System.nanoTime() - started);
+        }
+    }
+
+    private void dispose(MapHandle handle) {
+        openReaders.release(handle);
+        tileCache.invalidateMap(handle.getMapName());
+        log.debug("Карта '{}' освобождена после завершения чтений", handle.getMapName());
+    }
+
+    public Optional<List<String>> getMapsList() {
+        log.debug("Запрос списка загруженных карт");
+        return Optional.of(registry.versionKeys());
+    }
+
+    public List<String> getCurrentMapNames() {
+        List<String> names = new ArrayList<>();
+        for (MapHandle handle : registry.aliases().values()) {
+            names.add(handle.getMapName());
+        }
+        return names;
+    }
+
+    public boolean exists(String mapName) {
+        return registry.resolve(mapName) != null;
+    }
+
+    public Optional<MapDescriptor> getDescriptor(String mapName) throws MBTilesReadException {
+        MapHandle handle = registry.resolve(mapName);
+        return handle == null ? Optional.empty() : Optional.of(describe(handle));
+    }
+
+    public Optional<MapVersionsResponse> getVersions(String logicalName) {
+        MapHandle current = registry.current(logicalName);
+        if (current == null) {
+            return Optional.empty();
+        }
+        List<String> versions = new ArrayList<>();
+        for (MapHandle handle : registry.history(logicalName)) {
+            versions.add(handle.getMapName());
+        }
+        return Optional.of(new MapVersionsResponse(logicalName, current.getMapName(), versions));
+    }
+
+    public boolean promote(String mapName) {
+        String logicalName = MapRegistry.logicalName(mapName);
+        synchronized (registry) {
+            MapHandle before = registry.current(logicalName);
+            if (!registry.promote(mapName)) {
+                return false;
+            }
+            syncCoverage(logicalName, before);
+        }
+        log.info("Версия '{}' назначена текущей для карты '{}'", mapName, logicalName);
+        return true;
+    }
+
+    public int getOpenReaderCount() {
+        return openReaders.size();
+    }
+
+    public long getTileLoads() {
+        return tileLoads.getLoads();
+    }
+
+    public long getCoalescedTileLoads() {
+        return tileLoads.getCoalesced();
     }
 
     public Optional<TileResponse> getMbtiles(int z, int x, int y) throws MBTilesReadException, IOException , NumberFormatException {
-        for (Map.Entry<String, MBTilesReader> entry : loadedMaps.entrySet()) {
-            Tile tile = entry.getValue().getTile(z, x, y);
-            if (tile != null) {
-                InputStream is = tile.getData();
-                log.debug("Найден тайл по координатам z={}, x={}, y={} в карте '{}'", z, x, y, entry.getKey());
-                TileResponse tileResponse = new TileResponse(is.readAllBytes(), entry.getValue().getMetadata().getTileMimeType().toString());
-                is.close();
+        liveRequests.increment();
+        try {
+            return findTile(z, x, y);
+        } finally {
+            liveRequests.decrement();
+        }
+    }
+
+    private Optional<TileResponse> findTile(int z, int x, int y) throws MBTilesReadException {
+        if (!undescribed.isEmpty()) {
+            describeLater();
+        }
+        List<MapDescriptor> candidates = coverageIndex.candidates(z, x, y);
+        if (candidates.isEmpty()) {
+            log.debug("Ни одна карта не покрывает тайл z={}, x={}, y={}", z, x, y);
+            tileMetrics.recordLookup(TileMetrics.ANY_MAP, z, TileMetrics.Lookup.NOT_FOUND);
+            return Optional.empty();
+        }
+        for (MapDescriptor descriptor : candidates) {
+            TileKey key = new TileKey(descriptor.getMapName(), z, x, y);
+            TileResponse cached = tileCache.get(key);
+            if (cached != null) {
+                tileMetrics.recordLookup(descriptor.getMapName(), z, TileMetrics.Lookup.HIT);
+                return Optional.of(cached);
+            }
+            MapHandle handle = lease(descriptor.getMapName());
+            if (handle == null) continue;
+            try {
+                TileResponse tileResponse = loadTile(handle, key);
+                if (tileResponse == null) continue;
+                log.debug("Найден тайл по координатам z={}, x={}, y={} в карте '{}'", z, x, y, descriptor.getMapName());
+                tileMetrics.recordLookup(descriptor.getMapName(), z, TileMetrics.Lookup.MISS);
                 return Optional.of(tileResponse);
+            } finally {
+                handle.release();
             }
         }
-        log.warn("Тайл по координатам z={}, x={}, y={} не найден", z, x, y);
+        log.debug("Тайл по координатам z={}, x={}, y={} не найден", z, x, y);
+        tileMetrics.recordLookup(TileMetrics.ANY_MAP, z, TileMetrics.Lookup.NOT_FOUND);
         return Optional.empty();
     }
 
     public Optional<TileResponse> getMbtiles(String mapName, int z, int x, int y) throws MBTilesReadException, IOException {
-        MBTilesReader mbTilesReader = loadedMaps.get(mapName);
-        if (mbTilesReader == null) {
-            log.warn("Карта '{}' не найдена", mapName);
-            throw new MBTilesReadException(new RuntimeException("Карта не найдена"));
-        }
+        MapHandle handle = require(mapName);
+        liveRequests.increment();
+        try {
+            TileKey key = new TileKey(handle.getMapName(), z, x, y);
+            TileResponse cached = tileCache.get(key);
+            if (cached != null) {
+                log.debug("Тайл карты '{}' z={}, x={}, y={} найден в кэше", mapName, z, x, y);
+                tileMetrics.recordLookup(mapName, z, TileMetrics.Lookup.HIT);
+                return Optional.of(cached);
+            }
 
-        try (InputStream is = mbTilesReader.getTile(z, x, y).getData()) {
             log.debug("Получение тайла карты '{}' по координатам z={}, x={}, y={}", mapName, z, x, y);
-            return Optional.of(new TileResponse(is.readAllBytes(), mbTilesReader.getMetadata().getTileMimeType().toString()));
+            TileResponse tileResponse = loadTile(handle, key);
+            if (tileResponse == null) {
+                log.debug("Тайл карты '{}' z={}, x={}, y={} отсутствует", mapName, z, x, y);
+            }
+            tileMetrics.recordLookup(mapName, z, tileResponse != null ? TileMetrics.Lookup.MISS : TileMetrics.Lookup.NOT_FOUND);
+            return Optional.ofNullable(tileResponse);
+        } finally {
+            liveRequests.decrement();
+            handle.release();
         }
     }
 
+    /**
+     * Загружает в кэш тайлы диапазона упорядоченным чтением фрагментами, как пакетная выдача: один запрос на фрагмент
+     * вместо запроса на каждый тайл. Фрагменты, которые уже целиком в кэше, не читаются.
+     */
+    public WarmedTiles warmTiles(String mapName, int z, TileRange range) throws MBTilesReadException {
+        MapHandle handle = require(mapName);
+        try {
+            MapDescriptor descriptor = describe(handle);
+            if (handle.getArchive() != null) {
+                // Архив читается из отображённой памяти и в кэш тайлов не попадает
+                return new WarmedTiles(range.size(), 0, 0);
+            }
+            long scanned = 0;
+            long cached = 0;
+            long bytes = 0;
+            List<ScannedTile> present = new ArrayList<>();
+            for (TileRange chunk : chunks(range)) {
+                if (handle.isRetired()) break;
+                scanned += chunk.size();
+                present.clear();
+                if (!collectCached(handle, descriptor, z, chunk, present)) {
+                    TileReadPool pool = openReaders.acquire(handle, descriptor.isDeduplicated());
+                    List<ScannedTile> tiles;
+                    try {
+                        tiles = pool.scan(z, chunk);
+                    } finally {
+                        pool.release();
+                    }
+                    for (ScannedTile tile : tiles) {
+                        TileKey key = new TileKey(handle.getMapName(), z, tile.x(), tile.y());
+                        if (tileCache.peek(key) == null) {
+                            cache(handle, key, new StoredTile(tile.data(), tile.tileId()));
+                        }
+                        present.add(tile);
+                    }
+                }
+                cached += present.size();
+                for (ScannedTile tile : present) {
+                    bytes += tile.data().remaining();
+                }
+            }
+            return new WarmedTiles(scanned, cached, bytes);
+        } finally {
+            handle.release();
+        }
+    }
+
+    public ArchiveInfo compileArchive(String mapName) throws MBTilesReadException {
+        if (!archiveEnabled) {
+            throw new MBTilesReadException(new RuntimeException("Архивы тайлов отключены"));
+        }
+        MapHandle handle = require(mapName);
+        try {
+            describe(handle);
+            TileArchive archive = TileArchive.compile(handle.getFile());
+            handle.setArchive(archive);
+            // Тайлы в кэше несут ETag чтения из SQLite, а пул соединений больше не нужен для отдачи тайлов
+            tileCache.invalidateMap(handle.getMapName());
+            openReaders.release(handle);
+            return new ArchiveInfo(archive.getEntries(), archive.getBlobs(), archive.getSize());
+        } finally {
+            handle.release();
+        }
+    }
+
+    public Optional<ArchiveInfo> getArchiveInfo(String mapName) {
+        MapHandle handle = registry.resolve(mapName);
+        TileArchive archive = handle != null ? handle.getArchive() : null;
+        return archive != null ? Optional.of(new ArchiveInfo(archive.getEntries(), archive.getBlobs(), archive.getSize())) : Optional.empty();
+    }
+
+    public long getLiveRequests() {
+        return liveRequests.sum();
+    }
+
+    public Optional<String> getTileETag(String mapName, int z, int x, int y) throws MBTilesReadException {
+        MapHandle handle = lease(mapName);
+        if (handle == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(tileETag(handle, describe(handle), z, x, y));
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Карта, из которой запрос без имени карты получит тайл, если это известно без чтения самого тайла: по ETag
+     * в кэше, архиву или tile_id. Пусто, если ответ может дать только полное чтение.
+     */
+    public Optional<String> findTileMap(int z, int x, int y) throws MBTilesReadException {
+        for (MapDescriptor descriptor : coverageIndex.candidates(z, x, y)) {
+            MapHandle handle = lease(descriptor.getMapName());
+            if (handle == null) continue;
+            try {
+                if (!mightContain(handle, descriptor, z, x, y)) continue;
+                if (tileETag(handle, descriptor, z, x, y) != null) {
+                    return Optional.of(handle.getMapName());
+                }
+                // Без архива и tile_id неизвестный ETag не означает, что тайла в карте нет
+                if (handle.getArchive() == null && !descriptor.isDeduplicated()) {
+                    return Optional.empty();
+                }
+            } finally {
+                handle.release();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String tileETag(MapHandle handle, MapDescriptor descriptor, int z, int x, int y) throws MBTilesReadException {
+        TileArchive archive = handle.getArchive();
+        if (archive != null) {
+            StoredTile stored = archive.readTile(z, x, y);
+            return stored != null ? ETags.forTileId(handle.getLoadedAt(), stored.tileId()) : null;
+        }
+        TileKey key = new TileKey(handle.getMapName(), z, x, y);
+        String eTag = tileCache.getETag(key);
+        if (eTag == null && descriptor.isDeduplicated() && mightContain(handle, descriptor, z, x, y)) {
+            TileReadPool pool = openReaders.acquire(handle, true);
+            String tileId;
+            try {
+                tileId = pool.readTileId(z, x, y);
+            } finally {
+                pool.release();
+            }
+            if (tileId != null) {
+                eTag = ETags.forTileId(handle.getLoadedAt(), tileId);
+                tileCache.putETag(key, eTag);
+            }
+        }
+        return eTag;
+    }
+
+    /**
+     * Отдаёт тайлы диапазона по порядку колонок и строк. Диапазон читается фрагментами не больше SCAN_CHUNK_TILES
+     * тайлов, и соединение возвращается в пул до передачи фрагмента потребителю, который может писать в сокет клиента.
+     * Карта с архивом читается из архива, фрагмент, целиком лежащий в кэше, отдаётся без обращения к SQLite.
+     */
+    public void scanTiles(String mapName, int z, TileRange range, TileConsumer consumer) throws MBTilesReadException, IOException {
+        MapHandle handle = require(mapName);
+        try {
+            log.debug("Чтение диапазона тайлов карты '{}' z={} {}", mapName, z, range);
+            MapDescriptor descriptor = describe(handle);
+            for (TileRange chunk : chunks(range)) {
+                TileArchive archive = handle.getArchive();
+                if (archive != null) {
+                    scanArchive(archive, z, chunk, consumer);
+                } else {
+                    scanChunk(handle, descriptor, z, chunk, consumer);
+                }
+            }
+        } finally {
+            handle.release();
+        }
+    }
+
+    // Фрагменты идут по колонкам, поэтому тайлы отдаются в том же порядке, что и при чтении всего диапазона одним запросом
+    private static List<TileRange> chunks(TileRange range) {
+        int height = range.maxY() - range.minY() + 1;
+        int columns = Math.max(1, SCAN_CHUNK_TILES / height);
+        int rows = Math.min(height, SCAN_CHUNK_TILES);
+        List<TileRange> chunks = new ArrayList<>();
+        for (int x = range.minX(); x <= range.maxX(); x += columns) {
+            for (int y = range.minY(); y <= range.maxY(); y += rows) {
+                chunks.add(new TileRange(x, Math.min(range.maxX(), x + columns - 1), y, Math.min(range.maxY(), y + rows - 1)));
+            }
+        }
+        return chunks;
+    }
+
+    private static void scanArchive(TileArchive archive, int z, TileRange chunk, TileConsumer consumer) throws IOException {
+        for (int x = chunk.minX(); x <= chunk.maxX(); x++) {
+            for (int y = chunk.minY(); y <= chunk.maxY(); y++) {
+                StoredTile stored = archive.readTile(z, x, y);
+                if (stored != null) {
+                    consumer.accept(z, x, y, stored.data());
+                }
+            }
+        }
+    }
+
+    private void scanChunk(MapHandle handle, MapDescriptor descriptor, int z, TileRange chunk, TileConsumer consumer)
+            throws MBTilesReadException, IOException {
+        List<ScannedTile> tiles = new ArrayList<>();
+        if (!collectCached(handle, descriptor, z, chunk, tiles)) {
+            TileReadPool pool = openReaders.acquire(handle, descriptor.isDeduplicated());
+            try {
+                tiles = pool.scan(z, chunk);
+            } finally {
+                pool.release();
+            }
+        }
+        for (ScannedTile tile : tiles) {
+            consumer.accept(z, tile.x(), tile.y(), tile.data().duplicate());
+        }
+    }
+
+    // Собирает тайлы фрагмента из кэша; false, если какого-то из возможно существующих тайлов в кэше нет
+    private boolean collectCached(MapHandle handle, MapDescriptor descriptor, int z, TileRange chunk, List<ScannedTile> tiles) {
+        for (int x = chunk.minX(); x <= chunk.maxX(); x++) {
+            for (int y = chunk.minY(); y <= chunk.maxY(); y++) {
+                if (!mightContain(handle, descriptor, z, x, y)) continue;
+                TileResponse tile = tileCache.peek(new TileKey(handle.getMapName(), z, x, y));
+                if (tile == null) {
+                    return false;
+                }
+                tiles.add(new ScannedTile(x, y, tile.getData(), null));
+            }
+        }
+        return true;
+    }
+
+    private TileResponse loadTile(MapHandle handle, TileKey key) throws MBTilesReadException {
+        TileArchive archive = handle.getArchive();
+        if (archive != null) {
+            // Тайл из архива - срез отображённого файла, поэтому ни кэш в куче, ни объединение чтений не нужны
+            StoredTile stored = archive.readTile(key.z(), key.x(), key.y());
+            return stored != null ? toResponse(stored, describe(handle)) : null;
+        }
+        return tileLoads.load(key, () -> {
+            TileResponse cached = tileCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            StoredTile stored = readTile(handle, key.z(), key.x(), key.y());
+            return stored != null ? cache(handle, key, stored) : null;
+        });
+    }
+
+    private TileResponse cache(MapHandle handle, TileKey key, StoredTile stored) throws MBTilesReadException {
+        MapDescriptor descriptor = describe(handle);
+        // Одинаковое содержимое хранится в памяти один раз по его SHA-256, в том числе между картами;
+        // у тайлов без tile_id тот же хеш служит ETag, поэтому содержимое хешируется один раз
+        String contentHash = tileCache.contentHash(handle.getMapName(), descriptor.getLoadedAt(), stored.tileId(), stored.data());
+        String eTag = stored.tileId() != null
+                ? ETags.forTileId(descriptor.getLoadedAt(), stored.tileId())
+                : ETags.forHash(contentHash);
+        return tileCache.put(key, new TileResponse(stored.data(), descriptor.getMediaType(), eTag, descriptor), contentHash);
+    }
+
+    private TileResponse toResponse(StoredTile stored, MapDescriptor descriptor) {
+        String eTag = stored.tileId() != null
+                ? ETags.forTileId(descriptor.getLoadedAt(), stored.tileId())
+                : ETags.forContent(stored.data());
+        return new TileResponse(stored.data(), descriptor.getMediaType(), eTag, descriptor);
+    }
+
     public void close(String mapName) {
-        MBTilesReader mbTilesReader = loadedMaps.get(mapName);
-        if (mbTilesReader == null) {
-            log.warn("Попытка закрыть несуществующую карту '{}'", mapName);
-            return;
+        MapHandle handle;
+        synchronized (registry) {
+            handle = registry.resolve(mapName);
+            if (handle == null) {
+                log.warn("Попытка закрыть несуществующую карту '{}'", mapName);
+                return;
+            }
+            String logicalName = MapRegistry.logicalName(handle.getMapName());
+            MapHandle before = registry.current(logicalName);
+            registry.remove(handle);
+            syncCoverage(logicalName, before);
         }
-        mbTilesReader.close();
-        loadedMaps.remove(mapName);
-        log.info("Карта '{}' успешно закрыта и удалена из памяти", mapName);
+        undescribed.remove(handle);
+        handle.retire();
+        log.info("Карта '{}' выведена из обслуживания, активных чтений: {}", handle.getMapName(), handle.getInFlight());
     }
 
     public void closeAll() {
         log.info("Закрытие всех карт...");
-        loadedMaps.forEach((name, reader) -> {
+        List<MapHandle> handles;
+        synchronized (registry) {
+            handles = new ArrayList<>(registry.handles());
+            registry.clear();
+            coverageIndex.clear();
+        }
+        undescribed.clear();
+        for (MapHandle handle : handles) {
             try {
-                reader.close();
-                log.info("Карта '{}' успешно закрыта", name);
+                handle.retire();
+                log.info("Карта '{}' успешно закрыта", handle.getMapName());
             } catch (Exception e) {
-                log.error("Ошибка при закрытии карты '{}': {}", name, e.getMessage(), e);
+                log.error("Ошибка при закрытии карты '{}': {}", handle.getMapName(), e.getMessage(), e);
             }
-        });
-        loadedMaps.clear();
+        }
+        tileCache.invalidateAll();
         log.info("Все карты закрыты и очищены из памяти.");
     }
+
+    @PreDestroy
+    public void shutdown() {
+        startupExecutor.shutdownNow();
+        openReaders.releaseAll();
+    }
 }
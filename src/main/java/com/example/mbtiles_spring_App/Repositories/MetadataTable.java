@@ -0,0 +1,67 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+final class MetadataTable {
+
+    private static final byte GZIP_MAGIC_0 = (byte) 0x1f;
+    private static final byte GZIP_MAGIC_1 = (byte) 0x8b;
+
+    private MetadataTable() {
+    }
+
+    // Как и пул чтения тайлов: файл карты не меняется, а каталог карт может быть доступен только для чтения
+    static Connection openReadOnly(File file) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath(), config.toProperties());
+    }
+
+    static Map<String, String> read(Connection connection, File file) throws MBTilesReadException {
+        Map<String, String> values = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name, value FROM metadata")) {
+            while (rs.next()) {
+                if (rs.getString(1) != null) {
+                    values.put(rs.getString(1).toLowerCase(), rs.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось прочитать метаданные " + file.getName(), e);
+        }
+        return values;
+    }
+
+    static boolean firstTileIsGzip(Connection connection, File file) throws MBTilesReadException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT tile_data FROM tiles LIMIT 1")) {
+            return rs.next() && isGzip(rs.getBytes(1));
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось прочитать тайл " + file.getName(), e);
+        }
+    }
+
+    static boolean isDeduplicated(Connection connection, File file) throws MBTilesReadException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name IN ('map', 'images')")) {
+            return rs.next() && rs.getInt(1) == 2;
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось прочитать схему " + file.getName(), e);
+        }
+    }
+
+    static boolean isGzip(byte[] data) {
+        return data != null && data.length > 2 && data[0] == GZIP_MAGIC_0 && data[1] == GZIP_MAGIC_1;
+    }
+}
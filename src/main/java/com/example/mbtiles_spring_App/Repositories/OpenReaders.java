@@ -0,0 +1,93 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.SqliteReadProperties;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+final class OpenReaders {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenReaders.class);
+
+    private final SqliteReadProperties properties;
+    private final int maxOpen;
+    private final Semaphore readPermits;
+    private final Set<MapHandle> open = ConcurrentHashMap.newKeySet();
+
+    OpenReaders(SqliteReadProperties properties, int maxOpen) {
+        this.properties = properties;
+        this.maxOpen = Math.max(1, maxOpen);
+        this.readPermits = properties.getMaxConcurrentReads() > 0 ? new Semaphore(properties.getMaxConcurrentReads()) : null;
+    }
+
+    TileReadPool acquire(MapHandle handle, boolean deduplicated) throws MBTilesReadException {
+        handle.touch();
+        for (;;) {
+            TileReadPool pool = handle.getPool();
+            if (pool != null) {
+                if (pool.retain()) {
+                    return pool;
+                }
+                continue;
+            }
+            handle.lock().lock();
+            try {
+                if (handle.getPool() != null) {
+                    continue;
+                }
+                pool = new TileReadPool(handle.getFile(), properties, deduplicated, readPermits);
+                pool.retain();
+                handle.setPool(pool);
+                open.add(handle);
+            } finally {
+                handle.lock().unlock();
+            }
+            log.debug("Открыт читатель карты '{}', всего открыто: {}", handle.getMapName(), open.size());
+            evictIfNeeded(handle);
+            return pool;
+        }
+    }
+
+    void release(MapHandle handle) {
+        TileReadPool pool;
+        handle.lock().lock();
+        try {
+            pool = handle.getPool();
+            handle.setPool(null);
+            open.remove(handle);
+        } finally {
+            handle.lock().unlock();
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    void releaseAll() {
+        open.forEach(this::release);
+    }
+
+    int size() {
+        return open.size();
+    }
+
+    private void evictIfNeeded(MapHandle keep) {
+        while (open.size() > maxOpen) {
+            MapHandle eldest = open.stream()
+                    .filter(handle -> handle != keep)
+                    .filter(handle -> handle.getPool() != null && handle.getPool().isIdle())
+                    .min(Comparator.comparingLong(MapHandle::getLastAccess))
+                    .orElse(null);
+            if (eldest == null) {
+                return;
+            }
+            log.debug("Закрытие давно неиспользуемого читателя карты '{}'", eldest.getMapName());
+            release(eldest);
+        }
+    }
+}
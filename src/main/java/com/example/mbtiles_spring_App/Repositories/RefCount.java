@@ -0,0 +1,48 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class RefCount {
+
+    private final AtomicInteger count = new AtomicInteger(1);
+    private final AtomicBoolean retired = new AtomicBoolean();
+    private final Runnable onDrained;
+
+    RefCount(Runnable onDrained) {
+        this.onDrained = onDrained;
+    }
+
+    boolean retain() {
+        for (;;) {
+            int current = count.get();
+            if (current == 0) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (count.decrementAndGet() == 0) {
+            onDrained.run();
+        }
+    }
+
+    void retire() {
+        if (retired.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    boolean isRetired() {
+        return retired.get();
+    }
+
+    int inFlight() {
+        int current = count.get();
+        return retired.get() ? current : Math.max(0, current - 1);
+    }
+}
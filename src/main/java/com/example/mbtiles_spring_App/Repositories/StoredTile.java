@@ -0,0 +1,6 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import java.nio.ByteBuffer;
+
+record StoredTile(ByteBuffer data, String tileId) {
+}
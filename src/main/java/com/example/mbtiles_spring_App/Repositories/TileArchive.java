@@ -0,0 +1,394 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Скомпилированная из MBTiles копия карты только для чтения: каталог тайлов, упорядоченный по кривой Гильберта,
+ * и непрерывная область данных в том же порядке. Файл отображается в память, тайл находится двоичным поиском
+ * по каталогу и отдаётся срезом буфера без обращения к SQLite.
+ *
+ * <p>Формат: заголовок {@value #HEADER_SIZE} байт, затем записи каталога по {@value #ENTRY_SIZE} байт
+ * (идентификатор тайла; смещение в области данных и длина, упакованные в одно long), затем данные.
+ * Тайлы с одинаковым содержимым ссылаются на одно смещение.
+ * Тайл не пересекает границу сегмента отображения в 1 ГБ, поэтому срез всегда берётся из одного буфера.
+ */
+final class TileArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(TileArchive.class);
+    private static final int MAGIC = 0x4d425441;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".tilearchive";
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int LENGTH_BITS = 24;
+    private static final int MAX_TILE_LENGTH = (1 << LENGTH_BITS) - 1;
+    private static final int MAX_ZOOM = 30;
+    private static final String TILES_SQL = "SELECT zoom_level, tile_column, tile_row FROM tiles";
+    private static final String TILE_SQL = "SELECT tile_data FROM tiles WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?";
+
+    private final long entries;
+    private final long blobs;
+    private final long size;
+    private final ByteBuffer[] directory;
+    private final ByteBuffer[] data;
+
+    private TileArchive(long entries, long blobs, long size, ByteBuffer[] directory, ByteBuffer[] data) {
+        this.entries = entries;
+        this.blobs = blobs;
+        this.size = size;
+        this.directory = directory;
+        this.data = data;
+    }
+
+    long getEntries() {
+        return entries;
+    }
+
+    long getBlobs() {
+        return blobs;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    StoredTile readTile(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= 1 << z || y >= 1 << z) {
+            return null;
+        }
+        long id = tileId(z, x, y);
+        long low = 0;
+        long high = entries - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long found = directoryLong(mid * ENTRY_SIZE);
+            if (found < id) {
+                low = mid + 1;
+            } else if (found > id) {
+                high = mid - 1;
+            } else {
+                long packed = directoryLong(mid * ENTRY_SIZE + 8);
+                long offset = packed >>> LENGTH_BITS;
+                int length = (int) (packed & MAX_TILE_LENGTH);
+                ByteBuffer slice = length == 0
+                        ? ByteBuffer.allocate(0)
+                        : data[(int) (offset >>> SEGMENT_SHIFT)].slice((int) (offset & SEGMENT_MASK), length);
+                return new StoredTile(slice, Long.toHexString(offset));
+            }
+        }
+        return null;
+    }
+
+    private long directoryLong(long position) {
+        return directory[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    static TileArchive openIfFresh(File file) throws IOException {
+        Path path = sidecar(file);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION
+                    || header.getLong() != file.length() || header.getLong() != file.lastModified()) {
+                log.info("Архив тайлов '{}' устарел и не используется", path.getFileName());
+                return null;
+            }
+            long entries = header.getLong();
+            long dataOffset = header.getLong();
+            long dataLength = header.getLong();
+            long blobs = header.getLong();
+            // Отображение остаётся действительным после закрытия канала
+            return new TileArchive(entries, blobs, channel.size(),
+                    map(channel, HEADER_SIZE, entries * ENTRY_SIZE), map(channel, dataOffset, dataLength));
+        }
+    }
+
+    static TileArchive compile(File file) throws MBTilesReadException {
+        Path target = sidecar(file);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        // Идентичность файла фиксируется до чтения: если карту заменят во время компиляции, заголовок не должен
+        // выдать данные старого файла за новый
+        long length = file.length();
+        long lastModified = file.lastModified();
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath(), config.toProperties());
+             Statement statement = connection.createStatement();
+             PreparedStatement tile = connection.prepareStatement(TILE_SQL);
+             FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            long[] ids = readIds(statement, file);
+            long[] packed = new long[ids.length];
+            long dataOffset = HEADER_SIZE + (long) ids.length * ENTRY_SIZE;
+            // Данные пишутся в порядке каталога, чтобы соседние на карте тайлы лежали рядом на диске
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel.position(dataOffset)), 65536);
+            long offset = 0;
+            int[] zxy = new int[3];
+            // Одинаковое содержимое (море, пустая суша) пишется один раз, записи каталога ссылаются на одно смещение
+            Map<BlobDigest, Long> written = new HashMap<>();
+            MessageDigest sha256 = sha256();
+            for (int i = 0; i < ids.length; i++) {
+                coordinates(ids[i], zxy);
+                byte[] bytes = readTile(tile, zxy);
+                if (bytes.length > MAX_TILE_LENGTH) {
+                    throw new MBTilesReadException(String.format("Тайл z=%d, x=%d, y=%d в %s больше %d байт",
+                            zxy[0], zxy[1], zxy[2], file.getName(), MAX_TILE_LENGTH), new RuntimeException());
+                }
+                BlobDigest digest = BlobDigest.of(sha256, bytes);
+                Long existing = written.get(digest);
+                if (existing != null) {
+                    packed[i] = existing << LENGTH_BITS | bytes.length;
+                    continue;
+                }
+                written.put(digest, offset);
+                long room = SEGMENT_SIZE - (offset & SEGMENT_MASK);
+                if (bytes.length > room) {
+                    out.write(new byte[(int) room]);
+                    offset += room;
+                }
+                out.write(bytes);
+                packed[i] = offset << LENGTH_BITS | bytes.length;
+                offset += bytes.length;
+            }
+            out.flush();
+            if (file.length() != length || file.lastModified() != lastModified) {
+                throw new IOException("файл карты изменился во время компиляции");
+            }
+            writeIndex(channel, length, lastModified, ids, packed, dataOffset, offset, written.size());
+            channel.force(false);
+        } catch (SQLException | IOException e) {
+            deleteQuietly(temp);
+            throw new MBTilesReadException("Не удалось скомпилировать архив тайлов для " + file.getName(), e);
+        } catch (MBTilesReadException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            TileArchive archive = openIfFresh(file);
+            if (archive == null) {
+                throw new IOException("файл карты изменился во время компиляции");
+            }
+            return archive;
+        } catch (IOException e) {
+            deleteQuietly(target);
+            throw new MBTilesReadException("Не удалось сохранить архив тайлов для " + file.getName(), e);
+        }
+    }
+
+    static void deleteSidecar(File file) {
+        deleteQuietly(sidecar(file));
+    }
+
+    private static Path sidecar(File file) {
+        return file.toPath().resolveSibling(file.getName() + SUFFIX);
+    }
+
+    private static long[] readIds(Statement statement, File file) throws SQLException {
+        long[] ids = new long[1024];
+        int count = 0;
+        int skipped = 0;
+        try (ResultSet rs = statement.executeQuery(TILES_SQL)) {
+            while (rs.next()) {
+                int z = rs.getInt(1);
+                int x = rs.getInt(2);
+                int y = rs.getInt(3);
+                if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= 1 << z || y >= 1 << z) {
+                    skipped++;
+                    continue;
+                }
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = tileId(z, x, y);
+            }
+        }
+        if (skipped > 0) {
+            log.warn("При компиляции '{}' пропущено {} тайлов с координатами вне сетки", file.getName(), skipped);
+        }
+        Arrays.sort(ids, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    private static byte[] readTile(PreparedStatement statement, int[] zxy) throws SQLException {
+        statement.setInt(1, zxy[0]);
+        statement.setInt(2, zxy[1]);
+        statement.setInt(3, zxy[2]);
+        try (ResultSet rs = statement.executeQuery()) {
+            byte[] bytes = rs.next() ? rs.getBytes(1) : null;
+            return bytes != null ? bytes : new byte[0];
+        }
+    }
+
+    private static void writeIndex(FileChannel channel, long length, long lastModified, long[] ids, long[] packed,
+                                   long dataOffset, long dataLength, long blobs) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(length)
+                .putLong(lastModified)
+                .putLong(ids.length)
+                .putLong(dataOffset)
+                .putLong(dataLength)
+                .putLong(blobs);
+        header.clear();
+        writeFully(channel, header, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE * 4096);
+        long position = HEADER_SIZE;
+        for (int i = 0; i < ids.length; i++) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                position += writeFully(channel, buffer, position);
+                buffer.clear();
+            }
+            buffer.putLong(ids[i]).putLong(packed[i]);
+        }
+        buffer.flip();
+        writeFully(channel, buffer, position);
+    }
+
+    private static ByteBuffer[] map(FileChannel channel, long offset, long length) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(SEGMENT_SIZE, length - start));
+        }
+        return segments;
+    }
+
+    // Номер тайла как в PMTiles: тайлы всех предыдущих уровней, затем позиция на кривой Гильберта внутри уровня
+    static long tileId(int z, int x, int y) {
+        long base = ((1L << (2 * z)) - 1) / 3;
+        long n = 1L << z;
+        long rx;
+        long ry;
+        long d = 0;
+        long tx = x;
+        long ty = y;
+        for (long s = n >>> 1; s > 0; s >>>= 1) {
+            rx = (tx & s) > 0 ? 1 : 0;
+            ry = (ty & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    tx = n - 1 - tx;
+                    ty = n - 1 - ty;
+                }
+                long t = tx;
+                tx = ty;
+                ty = t;
+            }
+        }
+        return base + d;
+    }
+
+    static void coordinates(long id, int[] zxy) {
+        int z = 0;
+        while (((1L << (2 * (z + 1))) - 1) / 3 <= id) {
+            z++;
+        }
+        long n = 1L << z;
+        long t = id - ((1L << (2 * z)) - 1) / 3;
+        long x = 0;
+        long y = 0;
+        for (long s = 1; s < n; s <<= 1) {
+            long rx = 1 & (t >>> 1);
+            long ry = 1 & (t ^ rx);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                long swap = x;
+                x = y;
+                y = swap;
+            }
+            x += s * rx;
+            y += s * ry;
+            t >>>= 2;
+        }
+        zxy[0] = z;
+        zxy[1] = (int) x;
+        zxy[2] = (int) y;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец архива тайлов");
+            }
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    // Полный SHA-256: совпадение дайджестов у разного содержимого на практике исключено, в отличие от MD5
+    private record BlobDigest(long first, long second, long third, long fourth, int length) {
+
+        static BlobDigest of(MessageDigest sha256, byte[] bytes) {
+            ByteBuffer digest = ByteBuffer.wrap(sha256.digest(bytes));
+            return new BlobDigest(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong(), bytes.length);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить '{}': {}", path.getFileName(), e.getMessage());
+        }
+    }
+}
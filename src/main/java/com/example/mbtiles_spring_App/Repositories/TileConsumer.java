@@ -0,0 +1,10 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+@FunctionalInterface
+public interface TileConsumer {
+
+    void accept(int z, int x, int y, ByteBuffer data) throws IOException;
+}
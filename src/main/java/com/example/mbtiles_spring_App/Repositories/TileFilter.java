@@ -0,0 +1,248 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+final class TileFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(TileFilter.class);
+    private static final int MAGIC = 0x4d425446;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".tilefilter";
+    private static final String COUNT_SQL = "SELECT zoom_level, COUNT(*) FROM tiles GROUP BY zoom_level";
+    private static final String TILES_SQL = "SELECT zoom_level, tile_column, tile_row FROM tiles";
+
+    private final Map<Integer, ZoomFilter> zooms;
+
+    private TileFilter(Map<Integer, ZoomFilter> zooms) {
+        this.zooms = zooms;
+    }
+
+    boolean mightContain(int z, int x, int y) {
+        ZoomFilter filter = zooms.get(z);
+        return filter != null && filter.mightContain(x, y);
+    }
+
+    /** Фильтр, сохранённый рядом с файлом карты, или null, если его нет или он построен для другой версии файла. */
+    static TileFilter load(File file) {
+        Path sidecar = sidecar(file);
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        try {
+            TileFilter filter = read(sidecar, file);
+            if (filter != null) {
+                log.debug("Фильтр тайлов '{}' загружен с диска", file.getName());
+            }
+            return filter;
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать фильтр тайлов '{}': {}", sidecar.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    static TileFilter buildAndSave(File file, Map<Integer, TileRange> coverage, double falsePositiveRate, long exactMaxBits)
+            throws MBTilesReadException {
+        Path sidecar = sidecar(file);
+        long started = System.nanoTime();
+        TileFilter filter = build(file, coverage, falsePositiveRate, exactMaxBits);
+        log.info("Фильтр тайлов '{}' построен за {} мс", file.getName(), (System.nanoTime() - started) / 1_000_000);
+        try {
+            filter.write(sidecar, file);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить фильтр тайлов '{}': {}", sidecar.getFileName(), e.getMessage());
+        }
+        return filter;
+    }
+
+    static void deleteSidecar(File file) {
+        try {
+            Files.deleteIfExists(sidecar(file));
+        } catch (IOException e) {
+            log.warn("Не удалось удалить фильтр тайлов для '{}': {}", file.getName(), e.getMessage());
+        }
+    }
+
+    private static Path sidecar(File file) {
+        return file.toPath().resolveSibling(file.getName() + SUFFIX);
+    }
+
+    private static TileFilter build(File file, Map<Integer, TileRange> coverage, double falsePositiveRate, long exactMaxBits)
+            throws MBTilesReadException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Map<Integer, ZoomFilter> zooms = new HashMap<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath(), config.toProperties());
+             Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(COUNT_SQL)) {
+                while (rs.next()) {
+                    TileRange range = coverage.get(rs.getInt(1));
+                    if (range != null) {
+                        zooms.put(rs.getInt(1), ZoomFilter.create(range, rs.getLong(2), falsePositiveRate, exactMaxBits));
+                    }
+                }
+            }
+            try (ResultSet rs = statement.executeQuery(TILES_SQL)) {
+                while (rs.next()) {
+                    ZoomFilter filter = zooms.get(rs.getInt(1));
+                    if (filter != null) {
+                        filter.add(rs.getInt(2), rs.getInt(3));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new MBTilesReadException("Не удалось построить фильтр тайлов для " + file.getName(), e);
+        }
+        return new TileFilter(zooms);
+    }
+
+    private static TileFilter read(Path sidecar, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != file.length() || in.readLong() != file.lastModified()) {
+                return null;
+            }
+            int count = in.readInt();
+            Map<Integer, ZoomFilter> zooms = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int z = in.readInt();
+                TileRange range = new TileRange(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                int hashes = in.readInt();
+                long bitCount = in.readLong();
+                long[] bits = new long[in.readInt()];
+                for (int j = 0; j < bits.length; j++) {
+                    bits[j] = in.readLong();
+                }
+                zooms.put(z, new ZoomFilter(range, hashes, bitCount, bits));
+            }
+            return new TileFilter(zooms);
+        }
+    }
+
+    private void write(Path sidecar, File file) throws IOException {
+        Path temp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(file.length());
+            out.writeLong(file.lastModified());
+            out.writeInt(zooms.size());
+            for (Map.Entry<Integer, ZoomFilter> entry : zooms.entrySet()) {
+                ZoomFilter filter = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeInt(filter.range.minX());
+                out.writeInt(filter.range.maxX());
+                out.writeInt(filter.range.minY());
+                out.writeInt(filter.range.maxY());
+                out.writeInt(filter.hashes);
+                out.writeLong(filter.bitCount);
+                out.writeInt(filter.bits.length);
+                for (long word : filter.bits) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class ZoomFilter {
+
+        private final TileRange range;
+        private final int height;
+        private final int hashes;
+        private final long bitCount;
+        private final long[] bits;
+
+        private ZoomFilter(TileRange range, int hashes, long bitCount, long[] bits) {
+            this.range = range;
+            this.height = range.maxY() - range.minY() + 1;
+            this.hashes = hashes;
+            this.bitCount = bitCount;
+            this.bits = bits;
+        }
+
+        static ZoomFilter create(TileRange range, long tiles, double falsePositiveRate, long exactMaxBits) {
+            long bloomBits = Math.max(64, (long) Math.ceil(-tiles * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+            if (range.size() <= Math.max(bloomBits, exactMaxBits)) {
+                return new ZoomFilter(range, 0, range.size(), new long[(int) ((range.size() + 63) >>> 6)]);
+            }
+            int hashes = (int) Math.max(1, Math.round((double) bloomBits / tiles * Math.log(2)));
+            return new ZoomFilter(range, hashes, bloomBits, new long[(int) ((bloomBits + 63) >>> 6)]);
+        }
+
+        void add(int x, int y) {
+            if (hashes == 0) {
+                set(exactIndex(x, y));
+                return;
+            }
+            long hash = hash(x, y);
+            for (int i = 0; i < hashes; i++) {
+                set(bloomIndex(hash, i));
+            }
+        }
+
+        boolean mightContain(int x, int y) {
+            if (!range.contains(x, y)) {
+                return false;
+            }
+            if (hashes == 0) {
+                return get(exactIndex(x, y));
+            }
+            long hash = hash(x, y);
+            for (int i = 0; i < hashes; i++) {
+                if (!get(bloomIndex(hash, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long exactIndex(int x, int y) {
+            return (long) (x - range.minX()) * height + (y - range.minY());
+        }
+
+        private long bloomIndex(long hash, int i) {
+            long h1 = hash & 0xffffffffL;
+            long h2 = hash >>> 32;
+            return ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+        }
+
+        private void set(long index) {
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+
+        private boolean get(long index) {
+            return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+        }
+
+        private static long hash(int x, int y) {
+            long h = ((long) x << 32) ^ (y & 0xffffffffL);
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.SqliteReadProperties;
+import com.example.mbtiles_spring_App.Exceptions.ReadRejectedException;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+final class TileReadPool {
+
+    private static final Logger log = LoggerFactory.getLogger(TileReadPool.class);
+    private static final String TILE_SQL = "SELECT tile_data, NULL FROM tiles WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?";
+    private static final String DEDUPLICATED_TILE_SQL = "SELECT images.tile_data, map.tile_id FROM map "
+            + "JOIN images ON images.tile_id = map.tile_id "
+            + "WHERE map.zoom_level = ? AND map.tile_column = ? AND map.tile_row = ?";
+    private static final String RANGE_SQL = "SELECT tile_column, tile_row, tile_data, NULL FROM tiles "
+            + "WHERE zoom_level = ? AND tile_column BETWEEN ? AND ? AND tile_row BETWEEN ? AND ? "
+            + "ORDER BY tile_column, tile_row";
+    private static final String DEDUPLICATED_RANGE_SQL = "SELECT map.tile_column, map.tile_row, images.tile_data, map.tile_id FROM map "
+            + "JOIN images ON images.tile_id = map.tile_id "
+            + "WHERE map.zoom_level = ? AND map.tile_column BETWEEN ? AND ? AND map.tile_row BETWEEN ? AND ? "
+            + "ORDER BY map.tile_column, map.tile_row";
+    private static final String TILE_ID_SQL = "SELECT tile_id FROM map WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?";
+
+    private final String name;
+    private final boolean deduplicated;
+    private final long acquireTimeoutMs;
+    private final List<PooledConnection> connections;
+    private final BlockingQueue<PooledConnection> idle;
+    private final Semaphore admission;
+    private final Semaphore readPermits;
+    private final RefCount refs = new RefCount(this::closeConnections);
+
+    TileReadPool(File file, SqliteReadProperties properties, boolean deduplicated, Semaphore readPermits)
+            throws MBTilesReadException {
+        this.name = file.getName();
+        this.deduplicated = deduplicated;
+        this.acquireTimeoutMs = properties.getAcquireTimeoutMs();
+        this.connections = new ArrayList<>(properties.getPoolSize());
+        this.idle = new ArrayBlockingQueue<>(properties.getPoolSize());
+        this.admission = new Semaphore(properties.getPoolSize() + properties.getMaxWaiting());
+        this.readPermits = readPermits;
+        try {
+            for (int i = 0; i < properties.getPoolSize(); i++) {
+                PooledConnection connection = open(file, properties, deduplicated);
+                connections.add(connection);
+                idle.add(connection);
+            }
+        } catch (SQLException e) {
+            close();
+            throw new MBTilesReadException("Не удалось открыть пул соединений для " + name, e);
+        }
+        log.debug("Открыт пул из {} соединений для '{}'", connections.size(), name);
+    }
+
+    private static PooledConnection open(File file, SqliteReadProperties properties, boolean deduplicated) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath(), config.toProperties());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA mmap_size = " + properties.getMmapSize());
+            statement.execute("PRAGMA cache_size = " + properties.getCacheSize());
+            statement.execute("PRAGMA query_only = " + (properties.isQueryOnly() ? 1 : 0));
+            return new PooledConnection(connection,
+                    connection.prepareStatement(deduplicated ? DEDUPLICATED_TILE_SQL : TILE_SQL),
+                    deduplicated ? connection.prepareStatement(TILE_ID_SQL) : null,
+                    connection.prepareStatement(deduplicated ? DEDUPLICATED_RANGE_SQL : RANGE_SQL));
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    boolean hasTileIds() {
+        return deduplicated;
+    }
+
+    boolean isIdle() {
+        return idle.size() == connections.size();
+    }
+
+    StoredTile readTile(int z, int x, int y) throws MBTilesReadException {
+        PooledConnection connection = acquire();
+        try {
+            PreparedStatement statement = connection.tileStatement();
+            statement.setInt(1, z);
+            statement.setInt(2, x);
+            statement.setInt(3, y);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? new StoredTile(ByteBuffer.wrap(rs.getBytes(1)), rs.getString(2)) : null;
+            }
+        } catch (SQLException e) {
+            throw new MBTilesReadException(String.format("Ошибка чтения тайла z=%d, x=%d, y=%d из %s", z, x, y, name), e);
+        } finally {
+            giveBack(connection);
+        }
+    }
+
+    String readTileId(int z, int x, int y) throws MBTilesReadException {
+        if (!deduplicated) {
+            return null;
+        }
+        PooledConnection connection = acquire();
+        try {
+            PreparedStatement statement = connection.tileIdStatement();
+            statement.setInt(1, z);
+            statement.setInt(2, x);
+            statement.setInt(3, y);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new MBTilesReadException(String.format("Ошибка чтения тайла z=%d, x=%d, y=%d из %s", z, x, y, name), e);
+        } finally {
+            giveBack(connection);
+        }
+    }
+
+    // Строки читаются целиком до возврата соединения, поэтому диапазон должен быть ограничен вызывающим
+    List<ScannedTile> scan(int z, TileRange range) throws MBTilesReadException {
+        PooledConnection connection = acquire();
+        try {
+            PreparedStatement statement = connection.rangeStatement();
+            statement.setInt(1, z);
+            statement.setInt(2, range.minX());
+            statement.setInt(3, range.maxX());
+            statement.setInt(4, range.minY());
+            statement.setInt(5, range.maxY());
+            List<ScannedTile> tiles = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    tiles.add(new ScannedTile(rs.getInt(1), rs.getInt(2), ByteBuffer.wrap(rs.getBytes(3)), rs.getString(4)));
+                }
+            }
+            return tiles;
+        } catch (SQLException e) {
+            throw new MBTilesReadException(String.format("Ошибка чтения диапазона тайлов z=%d %s из %s", z, range, name), e);
+        } finally {
+            giveBack(connection);
+        }
+    }
+
+    // Ограничение на карту: не больше pool-size чтений и max-waiting ожидающих, остальные сразу получают отказ.
+    // Общий лимит readPermits не даёт нативным вызовам SQLite занять все потоки-носители виртуальных потоков.
+    private PooledConnection acquire() throws MBTilesReadException {
+        if (!admission.tryAcquire()) {
+            throw new ReadRejectedException("Слишком много одновременных чтений из " + name);
+        }
+        PooledConnection connection = null;
+        boolean acquired = false;
+        try {
+            connection = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            if (connection == null) {
+                throw new ReadRejectedException("Нет свободного соединения для " + name);
+            }
+            if (readPermits != null && !readPermits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new ReadRejectedException("Превышен общий лимит чтений SQLite при чтении " + name);
+            }
+            acquired = true;
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MBTilesReadException("Ожидание соединения прервано для " + name, e);
+        } finally {
+            if (!acquired) {
+                if (connection != null) {
+                    idle.offer(connection);
+                }
+                admission.release();
+            }
+        }
+    }
+
+    private void giveBack(PooledConnection connection) {
+        idle.offer(connection);
+        if (readPermits != null) {
+            readPermits.release();
+        }
+        admission.release();
+    }
+
+    boolean retain() {
+        return refs.retain();
+    }
+
+    void release() {
+        refs.release();
+    }
+
+    void close() {
+        refs.retire();
+    }
+
+    private void closeConnections() {
+        for (PooledConnection connection : connections) {
+            try {
+                connection.tileStatement().close();
+                connection.rangeStatement().close();
+                if (connection.tileIdStatement() != null) {
+                    connection.tileIdStatement().close();
+                }
+                connection.connection().close();
+            } catch (SQLException e) {
+                log.warn("Ошибка при закрытии соединения с '{}': {}", name, e.getMessage());
+            }
+        }
+        idle.clear();
+        log.debug("Закрыт пул соединений для '{}'", name);
+    }
+
+    private record PooledConnection(Connection connection,
+                                    PreparedStatement tileStatement,
+                                    PreparedStatement tileIdStatement,
+                                    PreparedStatement rangeStatement) {
+    }
+}
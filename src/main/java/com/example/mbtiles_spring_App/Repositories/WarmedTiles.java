@@ -0,0 +1,4 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+public record WarmedTiles(long scanned, long cached, long bytes) {
+}
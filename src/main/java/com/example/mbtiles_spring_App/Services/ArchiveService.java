@@ -0,0 +1,103 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.DTO.ArchiveStatusResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.MapRegisteredEvent;
+import com.example.mbtiles_spring_App.Repositories.ArchiveInfo;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Компиляция карт в архив тайлов, отображаемый в память. Выполняется по запросу или сразу после загрузки карты
+ * в одном фоновом потоке; после компиляции репозиторий сам переключает карту на чтение из архива.
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+    private static final String QUEUED = "QUEUED";
+    private static final String RUNNING = "RUNNING";
+    private static final String READY = "READY";
+    private static final String FAILED = "FAILED";
+
+    private final MbtilesRepository mbtilesRepository;
+    private final boolean compileOnUpload;
+    private final ExecutorService executor;
+    private final Map<String, ArchiveStatusResponse> statuses = new ConcurrentHashMap<>();
+
+    public ArchiveService(MbtilesRepository mbtilesRepository,
+                          @Value("${mbtiles.archive.compile-on-upload:false}") boolean compileOnUpload) {
+        this.mbtilesRepository = mbtilesRepository;
+        this.compileOnUpload = compileOnUpload;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-archive");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @EventListener
+    public void onMapRegistered(MapRegisteredEvent event) {
+        if (compileOnUpload && mbtilesRepository.getArchiveInfo(event.mapName()).isEmpty()) {
+            schedule(event.mapName());
+        }
+    }
+
+    public ArchiveStatusResponse request(String mapName) throws MBTilesReadException {
+        MapDescriptor descriptor = mbtilesRepository.getDescriptor(mapName)
+                .orElseThrow(() -> new MBTilesReadException(new RuntimeException("Карта не найдена")));
+        return schedule(descriptor.getMapName());
+    }
+
+    public Optional<ArchiveStatusResponse> getStatus(String mapName) {
+        ArchiveStatusResponse status = statuses.get(mapName);
+        if (status != null) {
+            return Optional.of(status);
+        }
+        return mbtilesRepository.getArchiveInfo(mapName)
+                .map(info -> new ArchiveStatusResponse(mapName, READY, info.tiles(), info.blobs(), info.bytes(), 0, null));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ArchiveStatusResponse schedule(String mapName) {
+        ArchiveStatusResponse queued = new ArchiveStatusResponse(mapName, QUEUED, 0, 0, 0, 0, null);
+        ArchiveStatusResponse status = statuses.compute(mapName, (name, existing) -> existing != null
+                && (QUEUED.equals(existing.getState()) || RUNNING.equals(existing.getState())) ? existing : queued);
+        if (status == queued) {
+            executor.execute(() -> compile(mapName));
+        }
+        return status;
+    }
+
+    private void compile(String mapName) {
+        statuses.put(mapName, new ArchiveStatusResponse(mapName, RUNNING, 0, 0, 0, 0, null));
+        long started = System.nanoTime();
+        try {
+            ArchiveInfo info = mbtilesRepository.compileArchive(mapName);
+            long elapsed = (System.nanoTime() - started) / 1_000_000;
+            statuses.put(mapName, new ArchiveStatusResponse(mapName, READY, info.tiles(), info.blobs(), info.bytes(), elapsed, null));
+            log.info("Архив тайлов карты '{}' скомпилирован за {} мс: {} тайлов, {} уникальных, {} КБ",
+                    mapName, elapsed, info.tiles(), info.blobs(), info.bytes() / 1024);
+        } catch (MBTilesReadException | RuntimeException e) {
+            statuses.put(mapName, new ArchiveStatusResponse(mapName, FAILED, 0, 0, 0, 0, e.getMessage()));
+            log.warn("Не удалось скомпилировать архив тайлов карты '{}': {}", mapName, e.getMessage());
+        }
+    }
+}
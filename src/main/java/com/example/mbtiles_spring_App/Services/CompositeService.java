@@ -0,0 +1,193 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.Caches.SingleFlight;
+import com.example.mbtiles_spring_App.Caches.TileCache;
+import com.example.mbtiles_spring_App.Caches.TileKey;
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Exceptions.ReadRejectedException;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Наложение растровых тайлов нескольких карт в один тайл. Слои читаются параллельно, накладываются
+ * снизу вверх с учётом прозрачности, результат кодируется один раз и кэшируется по списку версий слоёв,
+ * поэтому замена любой карты автоматически даёт новый ключ.
+ */
+@Service
+public class CompositeService {
+
+    private static final Logger log = LoggerFactory.getLogger(CompositeService.class);
+    private static final String KEY_PREFIX = "composite:";
+
+    private final MbtilesService mbtilesService;
+    private final TileCache tileCache;
+    private final int maxLayers;
+    private final long timeoutMs;
+    private final float jpegQuality;
+    private final SingleFlight<TileKey, TileResponse> renders = new SingleFlight<>(true);
+    private final ThreadPoolExecutor executor;
+    private final Timer renderTime;
+
+    public CompositeService(MbtilesService mbtilesService,
+                            TileCache tileCache,
+                            MeterRegistry meterRegistry,
+                            @Value("${mbtiles.composite.max-layers:8}") int maxLayers,
+                            @Value("${mbtiles.composite.threads:4}") int threads,
+                            @Value("${mbtiles.composite.queue-size:256}") int queueSize,
+                            @Value("${mbtiles.composite.timeout-ms:2000}") long timeoutMs,
+                            @Value("${mbtiles.composite.jpeg-quality:0.85}") float jpegQuality) {
+        this.mbtilesService = mbtilesService;
+        this.tileCache = tileCache;
+        this.maxLayers = Math.max(1, maxLayers);
+        this.timeoutMs = timeoutMs;
+        this.jpegQuality = jpegQuality;
+        int workers = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-composite");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.renderTime = Timer.builder("mbtiles.tile.composite")
+                .description("Время наложения слоёв в один тайл")
+                .register(meterRegistry);
+    }
+
+    public static MediaType outputFormat(String format) throws MBTilesReadException {
+        MediaType mediaType = RasterCodec.mediaType(format);
+        if (!RasterCodec.canWrite(mediaType)) {
+            throw new MBTilesReadException("Неподдерживаемый формат: " + format, new RuntimeException());
+        }
+        return mediaType;
+    }
+
+    public Optional<TileResponse> getTile(List<String> layers, int z, int x, int y, MediaType format) throws MBTilesReadException {
+        if (layers.isEmpty() || layers.size() > maxLayers) {
+            throw new MBTilesReadException("Число слоёв должно быть от 1 до " + maxLayers, new RuntimeException());
+        }
+        List<MapDescriptor> descriptors = new ArrayList<>(layers.size());
+        for (String layer : layers) {
+            MapDescriptor descriptor = mbtilesService.getMapInfo(layer);
+            if (!RasterCodec.canRead(descriptor.getMediaType())) {
+                throw new MBTilesReadException("Слой " + layer + " не растровый: " + descriptor.getMediaType(), new RuntimeException());
+            }
+            descriptors.add(descriptor);
+        }
+        TileKey key = new TileKey(cacheName(descriptors, format), z, x, y);
+        TileResponse cached = tileCache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return Optional.ofNullable(renders.load(key, () -> compose(descriptors, key, format)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private TileResponse compose(List<MapDescriptor> descriptors, TileKey key, MediaType format) throws MBTilesReadException {
+        long started = System.nanoTime();
+        List<Future<BufferedImage>> fetches = new ArrayList<>(descriptors.size());
+        try {
+            for (MapDescriptor descriptor : descriptors) {
+                fetches.add(executor.submit(() -> fetch(descriptor, key)));
+            }
+        } catch (RejectedExecutionException e) {
+            fetches.forEach(fetch -> fetch.cancel(true));
+            throw new ReadRejectedException("Очередь чтения слоёв переполнена");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<BufferedImage> images = new ArrayList<>(fetches.size());
+        try {
+            for (Future<BufferedImage> fetch : fetches) {
+                BufferedImage image = fetch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (image != null) {
+                    images.add(image);
+                }
+            }
+        } catch (TimeoutException e) {
+            throw new ReadRejectedException("Слои тайла z=" + key.z() + " не получены за " + timeoutMs + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MBTilesReadException("Чтение слоёв прервано", e);
+        } catch (ExecutionException e) {
+            // Отказ по перегрузке в слое должен дойти до клиента как 503, а не как ошибка чтения композита
+            if (e.getCause() instanceof ReadRejectedException rejected) {
+                throw rejected;
+            }
+            if (e.getCause() instanceof MBTilesReadException cause) {
+                throw cause;
+            }
+            throw new MBTilesReadException("Не удалось прочитать слой тайла " + key, e.getCause());
+        } finally {
+            fetches.forEach(fetch -> fetch.cancel(true));
+        }
+        if (images.isEmpty()) {
+            return null;
+        }
+        try {
+            byte[] data = RasterCodec.encode(blend(images), format, jpegQuality);
+            TileResponse tile = new TileResponse(data, format, ETags.forContent(data), descriptors.get(0));
+            tileCache.put(key, tile);
+            renderTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            log.debug("Тайл {} собран из {} слоёв", key, images.size());
+            return tile;
+        } catch (IOException e) {
+            throw new MBTilesReadException("Не удалось закодировать тайл " + key, e);
+        }
+    }
+
+    private BufferedImage fetch(MapDescriptor descriptor, TileKey key) throws MBTilesReadException, IOException {
+        Optional<TileResponse> tile = mbtilesService.getTileWithMapName(descriptor.getMapName(), key.z(), key.x(), key.y());
+        return tile.isPresent() ? RasterCodec.decode(tile.get()) : null;
+    }
+
+    // Слои разного размера (256 и 512) приводятся к самому крупному, порядок списка - снизу вверх.
+    private static BufferedImage blend(List<BufferedImage> images) {
+        int size = images.stream().mapToInt(image -> Math.max(image.getWidth(), image.getHeight())).max().orElse(256);
+        BufferedImage canvas = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            for (BufferedImage image : images) {
+                graphics.drawImage(image, 0, 0, size, size, null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return canvas;
+    }
+
+    private static String cacheName(List<MapDescriptor> descriptors, MediaType format) {
+        StringBuilder name = new StringBuilder(KEY_PREFIX).append(format.getSubtype());
+        for (MapDescriptor descriptor : descriptors) {
+            name.append('|').append(descriptor.getMapName());
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Repositories.MbtilesFileValidator;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class MapDirectoryWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(MapDirectoryWatcher.class);
+
+    private final MbtilesRepository mbtilesRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long debounceMs;
+    private final Map<Path, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private WatchService watchService;
+    private Path storageDir;
+
+    public MapDirectoryWatcher(MbtilesRepository mbtilesRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${mbtiles.watch.enabled:true}") boolean enabled,
+                               @Value("${mbtiles.watch.debounce-ms:2000}") long debounceMs) {
+        this.mbtilesRepository = mbtilesRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.debounceMs = debounceMs;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            log.info("Отслеживание директории карт отключено");
+            return;
+        }
+        storageDir = mbtilesRepository.getStorageDir();
+        Files.createDirectories(storageDir);
+        watchService = storageDir.getFileSystem().newWatchService();
+        storageDir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread watcher = new Thread(this::watch, "mbtiles-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Отслеживание директории '{}' запущено", storageDir);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void watch() {
+        try {
+            for (;;) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                        continue;
+                    }
+                    Path file = storageDir.resolve((Path) event.context());
+                    if (isMapFile(file)) {
+                        schedule(file);
+                    }
+                }
+                if (!key.reset()) {
+                    log.error("Директория '{}' больше недоступна для отслеживания", storageDir);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Отслеживание директории '{}' остановлено", storageDir);
+        }
+    }
+
+    private void rescan() {
+        log.warn("Переполнение очереди событий для '{}', повторное сканирование", storageDir);
+        File[] files = storageDir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (isMapFile(file.toPath())) {
+                    schedule(file.toPath());
+                }
+            }
+        }
+        for (Path file : mbtilesRepository.getLoadedFiles()) {
+            if (!Files.exists(file)) {
+                schedule(file);
+            }
+        }
+    }
+
+    private void schedule(Path file) {
+        File snapshot = file.toFile();
+        long size = snapshot.length();
+        long modified = snapshot.lastModified();
+        pending.compute(file, (path, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return scheduler.schedule(() -> settle(path, size, modified), debounceMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    // Выполняется в планировщике: необработанное исключение осело бы в ScheduledFuture без следа, а файл остался бы в pending
+    private void settle(Path file, long size, long modified) {
+        String action = "added";
+        long started = System.nanoTime();
+        try {
+            File current = file.toFile();
+            if (!current.exists()) {
+                action = "removed";
+                mbtilesRepository.unload(file).ifPresent(mapName -> {
+                    record("removed", "success");
+                    log.info("Файл '{}' удалён, карта '{}' выгружена", file.getFileName(), mapName);
+                });
+                return;
+            }
+            if (current.length() != size || current.lastModified() != modified) {
+                log.debug("Файл '{}' ещё записывается, ожидание", file.getFileName());
+                schedule(file);
+                return;
+            }
+            if (mbtilesRepository.isLoaded(file)) {
+                return;
+            }
+
+            action = mbtilesRepository.findMapName(file).isPresent() ? "replaced" : "added";
+            MbtilesFileValidator.validateHeader(file);
+            if (!MbtilesFileValidator.findMissingTables(file).isEmpty()) {
+                throw new MBTilesReadException("Файл не содержит таблиц MBTiles", new RuntimeException());
+            }
+            String mapName = mbtilesRepository.reload(file);
+            record(action, "success");
+            log.info("Перезагрузка '{}' ({}) завершена как '{}' за {} мс",
+                    file.getFileName(), action, mapName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (MBTilesReadException e) {
+            record(action, "failure");
+            log.error("Не удалось загрузить файл '{}': {}", file.getFileName(), e.getMessage());
+        } catch (RuntimeException e) {
+            record(action, "failure");
+            log.error("Ошибка при обработке файла '{}'", file.getFileName(), e);
+        } finally {
+            // Запись убирается, только если это текущая проверка; отложенная новым событием остаётся
+            pending.computeIfPresent(file, (path, future) -> future.getDelay(TimeUnit.NANOSECONDS) > 0 ? future : null);
+        }
+    }
+
+    private void record(String action, String result) {
+        Counter.builder("mbtiles.map.reloads")
+                .description("Перезагрузки карт из директории хранения")
+                .tag("action", action)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static boolean isMapFile(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.endsWith(".mbtiles") && !fileName.startsWith(".");
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.DTO.UploadStatusResponse;
+import com.example.mbtiles_spring_App.Metrics.TileMetrics;
+import com.example.mbtiles_spring_App.Models.UploadSession;
+import com.example.mbtiles_spring_App.Repositories.MbtilesFileValidator;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+@Service
+public class MapUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MapUploadService.class);
+    private static final long MB = 1048576;
+    private static final String PART_SUFFIX = ".part";
+    private static final String SESSION_SUFFIX = ".upload";
+    private static final long MINUTE_MS = 60000;
+    // Точка не допускается: имя файла карты режется по расширению, а '!' отделяет версию
+    private static final Pattern MAP_NAME = Pattern.compile("[\\w-]+");
+
+    private final MbtilesRepository mbtilesRepository;
+    private final TileMetrics tileMetrics;
+    private final long maxSize;
+    private final int bufferSize;
+    private final long sessionTtlMs;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private Path uploadDir;
+    private ScheduledExecutorService sweeper;
+
+    public MapUploadService(MbtilesRepository mbtilesRepository,
+                            TileMetrics tileMetrics,
+                            @Value("${mbtiles.upload.max-size:20480}") long maxSize,
+                            @Value("${mbtiles.upload.buffer-size:65536}") int bufferSize,
+                            @Value("${mbtiles.upload.session-ttl-minutes:1440}") long sessionTtlMinutes) {
+        this.mbtilesRepository = mbtilesRepository;
+        this.tileMetrics = tileMetrics;
+        this.maxSize = maxSize * MB;
+        this.bufferSize = bufferSize;
+        this.sessionTtlMs = sessionTtlMinutes * MINUTE_MS;
+    }
+
+    @PostConstruct
+    public void restoreSessions() throws IOException {
+        uploadDir = mbtilesRepository.getStorageDir().resolve(".uploads");
+        if (sessionTtlMs > 0) {
+            long period = Math.max(MINUTE_MS, sessionTtlMs / 4);
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mbtiles-upload-sweep");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::sweepQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadDir, "*" + SESSION_SUFFIX)) {
+            for (Path sessionFile : stream) {
+                String fileName = sessionFile.getFileName().toString();
+                String id = fileName.substring(0, fileName.length() - SESSION_SUFFIX.length());
+                Properties properties = new Properties();
+                try (Reader reader = Files.newBufferedReader(sessionFile)) {
+                    properties.load(reader);
+                }
+                Path partFile = uploadDir.resolve(id + PART_SUFFIX);
+                long received = Files.exists(partFile) ? Files.size(partFile) : 0;
+                long total = Long.parseLong(properties.getProperty("totalBytes", "-1"));
+                long lastActivity = Files.getLastModifiedTime(Files.exists(partFile) ? partFile : sessionFile).toMillis();
+                sessions.put(id, new UploadSession(id, properties.getProperty("mapName"), total, partFile, received, lastActivity));
+            }
+        }
+        logger.info("Восстановлено незавершённых загрузок: {}", sessions.size());
+    }
+
+    public UploadStatusResponse start(String mapName, long totalBytes) throws MBTilesReadException, IOException {
+        if (mapName == null || !MAP_NAME.matcher(mapName).matches()) {
+            throw new MBTilesReadException("Недопустимое имя карты: " + mapName, new RuntimeException());
+        }
+        if (totalBytes > maxSize) {
+            throw new MBTilesReadException("Размер файла превышает лимит: " + totalBytes, new RuntimeException());
+        }
+        Files.createDirectories(uploadDir);
+        String id = UUID.randomUUID().toString();
+        Path partFile = uploadDir.resolve(id + PART_SUFFIX);
+        Files.createFile(partFile);
+        Properties properties = new Properties();
+        properties.setProperty("mapName", mapName);
+        properties.setProperty("totalBytes", Long.toString(totalBytes));
+        try (Writer writer = Files.newBufferedWriter(uploadDir.resolve(id + SESSION_SUFFIX))) {
+            properties.store(writer, null);
+        }
+        UploadSession session = new UploadSession(id, mapName, totalBytes, partFile, 0, System.currentTimeMillis());
+        sessions.put(id, session);
+        logger.info("Начата загрузка {} карты {} ({} байт)", id, mapName, totalBytes);
+        return status(session);
+    }
+
+    public UploadStatusResponse append(String id, long offset, InputStream body) throws MBTilesReadException, IOException {
+        UploadSession session = find(id);
+        long started = System.nanoTime();
+        long written;
+        ReentrantLock lock = lockFor(session);
+        try {
+            requireReceiving(session);
+            long received = session.getReceivedBytes();
+            if (offset > received) {
+                throw new MBTilesReadException(String.format("Ожидалось смещение не больше %d, получено %d", received, offset), new RuntimeException());
+            }
+            long limit = session.getTotalBytes() > 0 ? session.getTotalBytes() : maxSize;
+            try (FileChannel channel = FileChannel.open(session.getPartFile(), StandardOpenOption.WRITE)) {
+                if (offset < received) {
+                    channel.truncate(offset);
+                    session.setReceivedBytes(offset);
+                }
+                channel.position(offset);
+                byte[] buffer = new byte[bufferSize];
+                ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+                long position = offset;
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    if (position + read > limit) {
+                        fail(session, "Размер файла превышает лимит " + limit);
+                        throw new MBTilesReadException("Размер файла превышает лимит " + limit, new RuntimeException());
+                    }
+                    wrapped.clear().limit(read);
+                    while (wrapped.hasRemaining()) {
+                        channel.write(wrapped);
+                    }
+                    position += read;
+                    session.setReceivedBytes(position);
+                }
+                written = position - offset;
+            }
+            validateReceived(session);
+        } finally {
+            session.touch(System.currentTimeMillis());
+            lock.unlock();
+        }
+        tileMetrics.recordUpload(written, System.nanoTime() - started);
+        logger.debug("Загрузка {}: получено {} байт", id, session.getReceivedBytes());
+        return status(session);
+    }
+
+    public UploadStatusResponse complete(String id) throws MBTilesReadException, IOException {
+        UploadSession session = find(id);
+        ReentrantLock lock = lockFor(session);
+        try {
+            requireReceiving(session);
+            if (session.getTotalBytes() > 0 && session.getReceivedBytes() != session.getTotalBytes()) {
+                throw new MBTilesReadException(String.format("Получено %d из %d байт", session.getReceivedBytes(), session.getTotalBytes()),
+                        new RuntimeException());
+            }
+            if (session.getPageSize() == 0) {
+                checkHeader(session);
+            }
+            Set<String> missing = MbtilesFileValidator.findMissingTables(session.getPartFile());
+            if (!missing.isEmpty()) {
+                fail(session, "В файле отсутствуют таблицы " + missing);
+                throw new MBTilesReadException("В файле отсутствуют таблицы " + missing, new RuntimeException());
+            }
+            String publishedName;
+            try {
+                publishedName = mbtilesRepository.publish(session.getMapName(), session.getPartFile());
+            } catch (IOException | MBTilesReadException | RuntimeException e) {
+                // Репозиторий уже убрал опубликованный файл, сессию повторять нельзя: данные удалены или перенесены
+                fail(session, "Не удалось опубликовать карту: " + e.getMessage());
+                throw e;
+            }
+            session.published(publishedName);
+            Files.deleteIfExists(uploadDir.resolve(id + SESSION_SUFFIX));
+        } finally {
+            session.touch(System.currentTimeMillis());
+            lock.unlock();
+        }
+        logger.info("Загрузка {} завершена, карта опубликована как {}", id, session.getPublishedName());
+        return status(session);
+    }
+
+    public UploadStatusResponse getStatus(String id) throws MBTilesReadException {
+        return status(find(id));
+    }
+
+    public void abort(String id) throws MBTilesReadException, IOException {
+        UploadSession session = find(id);
+        ReentrantLock lock = lockFor(session);
+        try {
+            sessions.remove(id);
+            deleteFiles(session);
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Загрузка {} отменена", id);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Удаляет сессии без активности дольше session-ttl-minutes вместе с их файлами, а также файлы .part,
+     * для которых сессии нет. Сессия, которая сейчас принимает данные, не трогается.
+     */
+    public int sweep(long now) throws IOException {
+        int removed = 0;
+        for (UploadSession session : sessions.values()) {
+            if (now - session.getLastActivity() < sessionTtlMs || !session.lock().tryLock()) continue;
+            try {
+                if (sessions.remove(session.getId(), session)) {
+                    if (session.getState() == UploadSession.State.RECEIVING) {
+                        session.failed("Истёк срок загрузки");
+                    }
+                    deleteFiles(session);
+                    removed++;
+                    logger.info("Загрузка {} карты {} удалена по истечении срока, состояние {}",
+                            session.getId(), session.getMapName(), session.getState());
+                }
+            } finally {
+                session.lock().unlock();
+            }
+        }
+        if (!Files.isDirectory(uploadDir)) {
+            return removed;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadDir, "*" + PART_SUFFIX)) {
+            for (Path partFile : stream) {
+                String fileName = partFile.getFileName().toString();
+                String id = fileName.substring(0, fileName.length() - PART_SUFFIX.length());
+                if (!sessions.containsKey(id) && now - Files.getLastModifiedTime(partFile).toMillis() >= sessionTtlMs) {
+                    Files.deleteIfExists(partFile);
+                    removed++;
+                    logger.info("Удалён файл {} без сессии загрузки", fileName);
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep(System.currentTimeMillis());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось очистить устаревшие загрузки: {}", e.getMessage());
+        }
+    }
+
+    private static ReentrantLock lockFor(UploadSession session) throws MBTilesReadException {
+        ReentrantLock lock = session.lock();
+        if (!lock.tryLock()) {
+            throw new MBTilesReadException("Загрузка " + session.getId() + " уже обрабатывает другой запрос", new RuntimeException());
+        }
+        return lock;
+    }
+
+    private void validateReceived(UploadSession session) throws MBTilesReadException, IOException {
+        long received = session.getReceivedBytes();
+        if (session.getPageSize() == 0 && received >= MbtilesFileValidator.HEADER_SIZE) {
+            checkHeader(session);
+        }
+        if (session.getPageSize() > 0 && !session.isSchemaChecked() && received >= session.getPageSize()) {
+            try {
+                if (MbtilesFileValidator.findMissingTables(session.getPartFile()).isEmpty()) {
+                    session.setSchemaChecked(true);
+                    logger.debug("Загрузка {}: схема MBTiles подтверждена", session.getId());
+                }
+            } catch (MBTilesReadException e) {
+                logger.debug("Загрузка {}: схема пока не читается: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void checkHeader(UploadSession session) throws MBTilesReadException, IOException {
+        byte[] header = new byte[MbtilesFileValidator.HEADER_SIZE];
+        try (InputStream in = Files.newInputStream(session.getPartFile())) {
+            int read = in.readNBytes(header, 0, header.length);
+            if (read < header.length) {
+                header = Arrays.copyOf(header, read);
+            }
+        }
+        try {
+            session.setPageSize(MbtilesFileValidator.validateHeader(header));
+        } catch (MBTilesReadException e) {
+            fail(session, e.getMessage());
+            throw e;
+        }
+    }
+
+    private void fail(UploadSession session, String error) throws IOException {
+        logger.warn("Загрузка {} отклонена: {}", session.getId(), error);
+        session.failed(error);
+        deleteFiles(session);
+    }
+
+    private void deleteFiles(UploadSession session) throws IOException {
+        Files.deleteIfExists(session.getPartFile());
+        Files.deleteIfExists(uploadDir.resolve(session.getId() + SESSION_SUFFIX));
+    }
+
+    private UploadSession find(String id) throws MBTilesReadException {
+        UploadSession session = sessions.get(id);
+        if (session == null) {
+            throw new MBTilesReadException("Загрузка не найдена: " + id, new RuntimeException());
+        }
+        return session;
+    }
+
+    private static void requireReceiving(UploadSession session) throws MBTilesReadException {
+        if (session.getState() != UploadSession.State.RECEIVING) {
+            throw new MBTilesReadException("Загрузка " + session.getId() + " уже в состоянии " + session.getState(), new RuntimeException());
+        }
+    }
+
+    private static UploadStatusResponse status(UploadSession session) {
+        return new UploadStatusResponse(session.getId(), session.getMapName(), session.getReceivedBytes(), session.getTotalBytes(),
+                session.getState().name(), session.getPublishedName(), session.getError());
+    }
+}
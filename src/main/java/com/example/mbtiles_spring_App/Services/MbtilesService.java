@@ -1,19 +1,24 @@
 package com.example.mbtiles_spring_App.Services;
 
-import com.example.mbtiles_spring_App.DTO.MapInfoResponse;
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.DTO.MapVersionsResponse;
 import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Metrics.TileMetrics;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
 import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
 import org.imintel.mbtiles4j.MBTilesReadException;
-import org.imintel.mbtiles4j.model.MetadataBounds;
-import org.imintel.mbtiles4j.model.MetadataEntry.TileMimeType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 @Service
 public class MbtilesService {
@@ -21,10 +26,14 @@ public class MbtilesService {
     private static final Logger logger = LoggerFactory.getLogger(MbtilesService.class);
 
     private final MbtilesRepository mbtilesRepository;
+    private final TileMetrics tileMetrics;
+    private final OverzoomService overzoomService;
 
     @Autowired
-    public MbtilesService(MbtilesRepository mbtilesRepository) {
+    public MbtilesService(MbtilesRepository mbtilesRepository, TileMetrics tileMetrics, OverzoomService overzoomService) {
         this.mbtilesRepository = mbtilesRepository;
+        this.tileMetrics = tileMetrics;
+        this.overzoomService = overzoomService;
     }
 
     public void saveMap(MultipartFile file, String fileName) throws MBTilesReadException, IOException {
@@ -33,31 +42,27 @@ public class MbtilesService {
         logger.info("Карта {} успешно сохранена", fileName);
     }
 
-    public TileResponse getTile(String mapName, int z, int x, int y) throws MBTilesReadException, IOException {
-        logger.info("Запрос тайла для карты: {} на уровне z={}, x={}, y={}", mapName, z, x, y);
-        if (mapName != null && !mapName.isBlank()) {
-            return getTileWithMapName(mapName, z, x, y);
-        }
-        return getTileWithoutMapName(z, x, y);
+    public Optional<TileResponse> getTile(String mapName, int z, int x, int y) throws MBTilesReadException, IOException {
+        logger.debug("Запрос тайла для карты: {} на уровне z={}, x={}, y={}", mapName, z, x, y);
+        long started = System.nanoTime();
+        Optional<TileResponse> tile = mapName != null && !mapName.isBlank()
+                ? getTileWithMapName(mapName, z, x, y)
+                : getTileWithoutMapName(z, x, y);
+        String servedBy = tile.isPresent() ? tile.get().getDescriptor().getMapName() : mapName;
+        tileMetrics.recordRequest(servedBy, z, System.nanoTime() - started);
+        return tile;
     }
 
-    public TileResponse getTileWithoutMapName(int z, int x, int y) throws MBTilesReadException, IOException, NullPointerException {
+    public Optional<TileResponse> getTileWithoutMapName(int z, int x, int y) throws MBTilesReadException, IOException {
         validateCoordinates(z, x, y);
         logger.debug("Запрос тайла без имени карты на уровне z={}, x={}, y={}", z, x, y);
 
-        TileResponse tile = mbtilesRepository.getMbtiles(z, x, y)
-                .orElseThrow(() -> new MBTilesReadException(String.format("Карта не найдена на уровне z=%d, x=%d, y=%d", z, x, y), new RuntimeException()));
-
-        if (tile.getData() == null) {
-            logger.error("Тайл не найден на уровне z={}, x={}, y={}", z, x, y);
-            throw new MBTilesReadException(String.format("Тайл не найден на уровне z=%d, x=%d, y=%d", z, x, y), new RuntimeException());
-        }
-
-        logger.debug("Тайл найден на уровне z={}, x={}, y={}", z, x, y);
+        Optional<TileResponse> tile = mbtilesRepository.getMbtiles(z, x, y);
+        logger.debug("Тайл {} на уровне z={}, x={}, y={}", tile.isPresent() ? "найден" : "не найден", z, x, y);
         return tile;
     }
 
-    public TileResponse getTileWithMapName(String mapName, int z, int x, int y) throws MBTilesReadException, IOException {
+    public Optional<TileResponse> getTileWithMapName(String mapName, int z, int x, int y) throws MBTilesReadException, IOException {
         logger.debug("Запрос тайла для карты: {} на уровне z={}, x={}, y={}", mapName, z, x, y);
 
         if (!mapExist(mapName)) {
@@ -67,20 +72,48 @@ public class MbtilesService {
 
         validateCoordinates(z, x, y);
 
-        TileResponse tile = mbtilesRepository.getMbtiles(mapName, z, x, y)
-                .orElseThrow(() -> new MBTilesReadException(new RuntimeException(String.format("Тайл не найден на уровне z=%d, x=%d, y=%d,", z, x, y))));
-
-        if (tile.getData() == null) {
-            logger.error("Тайл не найден на уровне z={}, x={}, y={}", z, x, y);
-            throw new MBTilesReadException(String.format("Тайл не найден на уровне z=%d, x=%d, y=%d", z, x, y), new RuntimeException());
+        Optional<TileResponse> tile = mbtilesRepository.getMbtiles(mapName, z, x, y);
+        if (tile.isEmpty()) {
+            tile = overzoomService.getTile(mapName, z, x, y);
         }
-
-        logger.debug("Тайл найден на уровне z={}, x={}, y={}", z, x, y);
+        logger.debug("Тайл карты {} {} на уровне z={}, x={}, y={}", mapName, tile.isPresent() ? "найден" : "не найден", z, x, y);
         return tile;
     }
 
+    public Optional<String> getTileETag(String mapName, int z, int x, int y) throws MBTilesReadException {
+        return mbtilesRepository.getTileETag(mapName, z, x, y);
+    }
+
+    public Optional<String> findTileMap(int z, int x, int y) throws MBTilesReadException {
+        return mbtilesRepository.findTileMap(z, x, y);
+    }
+
+    public TileResponse decompress(TileResponse tile) throws IOException {
+        byte[] compressed = new byte[tile.getLength()];
+        tile.getData().get(tile.getData().position(), compressed);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new TileResponse(in.readAllBytes(), tile.getMediaType(),
+                    ETags.identityVariant(tile.getETag()), tile.getDescriptor());
+        }
+    }
+
     private boolean mapExist(String mapName) {
-        return mapName != null && mbtilesRepository.getMapsList().orElse(List.of()).contains(mapName);
+        return mapName != null && mbtilesRepository.exists(mapName);
+    }
+
+    public MapVersionsResponse getVersions(String mapName) throws MBTilesReadException {
+        logger.info("Запрашиваю версии карты: {}", mapName);
+        return mbtilesRepository.getVersions(mapName)
+                .orElseThrow(() -> new MBTilesReadException("Карта не найдена: " + mapName, new RuntimeException()));
+    }
+
+    public void promote(String mapName, String version) throws MBTilesReadException {
+        if (version == null || !mapName.equals(version.substring(0, Math.max(version.indexOf('!'), 0)))
+                || !mbtilesRepository.promote(version)) {
+            logger.error("Версия {} карты {} не найдена", version, mapName);
+            throw new MBTilesReadException("Версия карты не найдена: " + version, new RuntimeException());
+        }
+        logger.info("Версия {} назначена текущей для карты {}", version, mapName);
     }
 
     public List<String> getAllMapsNames() {
@@ -88,31 +121,10 @@ public class MbtilesService {
         return mbtilesRepository.getMapsList().orElse(List.of());
     }
 
-    public MapInfoResponse getMapInfo(String mapName) throws MBTilesReadException {
-        logger.info("Запрашиваю информацию о карте: {}", mapName);
-        return mapInfoResponseBuilder(mapName);
-    }
-
-    private MapInfoResponse mapInfoResponseBuilder(String mapName) throws MBTilesReadException {
-        logger.debug("Строю ответ с информацией о карте: {}", mapName);
-        if (!mapExist(mapName)) throw new MBTilesReadException("Не правильное имя карты", new RuntimeException());
-        String name = mbtilesRepository.getTileSetName(mapName).orElse(null);
-        String attribution = mbtilesRepository.getAttribution(mapName).orElse(null);
-        String tileSetName = mbtilesRepository.getTileSetName(mapName).orElse(null);
-        TileMimeType tileMimeType = mbtilesRepository.getTileMimeType(mapName).orElse(null);
-        int minZoom = mbtilesRepository.getMinZoom(mapName).orElse(-1);
-        int maxZoom = mbtilesRepository.getMaxZoom(mapName).orElse(-1);
-        MetadataBounds metadataBounds = mbtilesRepository.getTileSetBounds(mapName).orElse(null);
-        double minLon = metadataBounds != null ? metadataBounds.getLeft() : 0;
-        double minLat = metadataBounds != null ? metadataBounds.getBottom() : 0;
-        double maxLon = metadataBounds != null ? metadataBounds.getRight() : 0;
-        double maxLat = metadataBounds != null ? metadataBounds.getTop() : 0;
-
-        MapInfoResponse mapInfoResponse = new MapInfoResponse(name, attribution, tileSetName,
-                tileMimeType != null ? tileMimeType.toString() : "", minZoom, maxZoom, minLon, maxLon, minLat, maxLat);
-
-        logger.debug("Информация о карте для: {} построена", mapName);
-        return mapInfoResponse;
+    public MapDescriptor getMapInfo(String mapName) throws MBTilesReadException {
+        logger.debug("Запрашиваю информацию о карте: {}", mapName);
+        return mbtilesRepository.getDescriptor(mapName)
+                .orElseThrow(() -> new MBTilesReadException("Не правильное имя карты", new RuntimeException()));
     }
 
     public void closeConnection(String mapName) throws MBTilesReadException {
@@ -0,0 +1,204 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.Caches.SingleFlight;
+import com.example.mbtiles_spring_App.Caches.TileCache;
+import com.example.mbtiles_spring_App.Caches.TileKey;
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Exceptions.ReadRejectedException;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Синтез растровых тайлов глубже maxzoom карты: берётся ближайший существующий предок, из него вырезается
+ * нужная часть и масштабируется до размера тайла. Декодированные предки кэшируются отдельно, поэтому
+ * при панорамировании одна распаковка обслуживает все дочерние тайлы.
+ */
+@Service
+public class OverzoomService {
+
+    private static final Logger log = LoggerFactory.getLogger(OverzoomService.class);
+    private static final long MB = 1048576;
+
+    private final MbtilesRepository mbtilesRepository;
+    private final TileCache tileCache;
+    private final boolean enabled;
+    private final int maxLevels;
+    private final float jpegQuality;
+    private final long timeoutMs;
+    private final Object interpolation;
+    private final Cache<TileKey, BufferedImage> decoded;
+    private final SingleFlight<TileKey, TileResponse> renders = new SingleFlight<>(true);
+    private final ThreadPoolExecutor executor;
+    private final Timer renderTime;
+
+    public OverzoomService(MbtilesRepository mbtilesRepository,
+                           TileCache tileCache,
+                           MeterRegistry meterRegistry,
+                           @Value("${mbtiles.overzoom.enabled:false}") boolean enabled,
+                           @Value("${mbtiles.overzoom.max-levels:4}") int maxLevels,
+                           @Value("${mbtiles.overzoom.threads:2}") int threads,
+                           @Value("${mbtiles.overzoom.queue-size:64}") int queueSize,
+                           @Value("${mbtiles.overzoom.timeout-ms:2000}") long timeoutMs,
+                           @Value("${mbtiles.overzoom.decoded-cache-size:64}") long decodedCacheSize,
+                           @Value("${mbtiles.overzoom.interpolation:bilinear}") String interpolation,
+                           @Value("${mbtiles.overzoom.jpeg-quality:0.85}") float jpegQuality) {
+        this.mbtilesRepository = mbtilesRepository;
+        this.tileCache = tileCache;
+        this.enabled = enabled;
+        this.maxLevels = Math.max(1, maxLevels);
+        this.timeoutMs = timeoutMs;
+        this.jpegQuality = jpegQuality;
+        this.interpolation = switch (interpolation.toLowerCase()) {
+            case "nearest" -> RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+            case "bicubic" -> RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+            default -> RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+        };
+        this.decoded = Caffeine.newBuilder()
+                .maximumWeight(decodedCacheSize * MB)
+                .weigher((TileKey key, BufferedImage image) -> image.getWidth() * image.getHeight() * 4)
+                .expireAfterAccess(Duration.ofMinutes(2))
+                .build();
+        int workers = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-overzoom");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.renderTime = Timer.builder("mbtiles.tile.overzoom")
+                .description("Время синтеза тайла глубже maxzoom")
+                .register(meterRegistry);
+        if (enabled) {
+            log.info("Overzoom включён: до {} уровней, {} потоков", this.maxLevels, workers);
+        }
+    }
+
+    public Optional<TileResponse> getTile(String mapName, int z, int x, int y) throws MBTilesReadException {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        MapDescriptor descriptor = mbtilesRepository.getDescriptor(mapName).orElse(null);
+        if (descriptor == null || z <= descriptor.getMaxZoom() || z - descriptor.getMaxZoom() > maxLevels
+                || !RasterCodec.canRead(descriptor.getMediaType()) || !RasterCodec.canWrite(descriptor.getMediaType())) {
+            return Optional.empty();
+        }
+        TileKey key = new TileKey(descriptor.getMapName(), z, x, y);
+        TileResponse cached = tileCache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return Optional.ofNullable(renders.load(key, () -> submit(descriptor, key)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private TileResponse submit(MapDescriptor descriptor, TileKey key) throws MBTilesReadException {
+        Future<TileResponse> future;
+        try {
+            future = executor.submit(() -> render(descriptor, key));
+        } catch (RejectedExecutionException e) {
+            throw new ReadRejectedException("Очередь синтеза тайлов переполнена");
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ReadRejectedException("Синтез тайла z=" + key.z() + " занял больше " + timeoutMs + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MBTilesReadException("Синтез тайла прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MBTilesReadException cause) {
+                throw cause;
+            }
+            throw new MBTilesReadException("Не удалось синтезировать тайл " + key, e.getCause());
+        }
+    }
+
+    private TileResponse render(MapDescriptor descriptor, TileKey key) throws MBTilesReadException, IOException {
+        long started = System.nanoTime();
+        int lowest = Math.max(descriptor.getMinZoom(), key.z() - maxLevels);
+        for (int parentZ = descriptor.getMaxZoom(); parentZ >= lowest; parentZ--) {
+            int depth = key.z() - parentZ;
+            BufferedImage parent = decodedParent(descriptor, parentZ, key.x() >> depth, key.y() >> depth);
+            if (parent == null) {
+                continue;
+            }
+            if (parent.getWidth() >> depth == 0 || parent.getHeight() >> depth == 0) {
+                return null;
+            }
+            byte[] data = RasterCodec.encode(crop(parent, depth, key.x(), key.y()), descriptor.getMediaType(), jpegQuality);
+            TileResponse tile = new TileResponse(data, descriptor.getMediaType(), ETags.forContent(data), descriptor);
+            tileCache.put(key, tile);
+            renderTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return tile;
+        }
+        return null;
+    }
+
+    private BufferedImage decodedParent(MapDescriptor descriptor, int z, int x, int y) throws MBTilesReadException, IOException {
+        TileKey key = new TileKey(descriptor.getMapName(), z, x, y);
+        BufferedImage image = decoded.getIfPresent(key);
+        if (image != null) {
+            return image;
+        }
+        Optional<TileResponse> tile = mbtilesRepository.getMbtiles(descriptor.getMapName(), z, x, y);
+        if (tile.isEmpty()) {
+            return null;
+        }
+        image = RasterCodec.decode(tile.get());
+        decoded.put(key, image);
+        return image;
+    }
+
+    // Строки тайлов в TMS считаются снизу, а строки изображения сверху, поэтому смещение по y переворачивается.
+    private BufferedImage crop(BufferedImage parent, int depth, int x, int y) {
+        int cells = 1 << depth;
+        int cellWidth = parent.getWidth() >> depth;
+        int cellHeight = parent.getHeight() >> depth;
+        int column = x & (cells - 1);
+        int row = cells - 1 - (y & (cells - 1));
+        boolean alpha = parent.getColorModel().hasAlpha();
+        BufferedImage child = new BufferedImage(parent.getWidth(), parent.getHeight(),
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = child.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            graphics.drawImage(parent,
+                    0, 0, child.getWidth(), child.getHeight(),
+                    column * cellWidth, row * cellHeight, (column + 1) * cellWidth, (row + 1) * cellHeight,
+                    null);
+        } finally {
+            graphics.dispose();
+        }
+        return child;
+    }
+}
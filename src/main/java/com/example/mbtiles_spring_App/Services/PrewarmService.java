@@ -0,0 +1,202 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.DTO.PrewarmStatusResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.MapRegisteredEvent;
+import com.example.mbtiles_spring_App.Models.PrewarmJob;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import com.example.mbtiles_spring_App.Repositories.WarmedTiles;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Прогрев кэша тайлов нижних уровней после запуска и после загрузки карты. Работает в потоках с низким
+ * приоритетом, читает тайлы небольшими порциями и перед каждой порцией уступает живым запросам.
+ */
+@Service
+public class PrewarmService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrewarmService.class);
+    private static final long MB = 1048576;
+    private static final long MAX_YIELD_MS = 1000;
+
+    private final MbtilesRepository mbtilesRepository;
+    private final boolean enabled;
+    private final int minZoom;
+    private final int maxZoom;
+    private final int chunkTiles;
+    private final long maxBytes;
+    private final long backoffMs;
+    private final ExecutorService executor;
+    private final Map<String, PrewarmJob> jobs = new ConcurrentHashMap<>();
+
+    public PrewarmService(MbtilesRepository mbtilesRepository,
+                          @Value("${mbtiles.prewarm.enabled:true}") boolean enabled,
+                          @Value("${mbtiles.prewarm.min-zoom:0}") int minZoom,
+                          @Value("${mbtiles.prewarm.max-zoom:8}") int maxZoom,
+                          @Value("${mbtiles.prewarm.parallelism:1}") int parallelism,
+                          @Value("${mbtiles.prewarm.chunk-tiles:256}") int chunkTiles,
+                          @Value("${mbtiles.prewarm.max-megabytes:64}") long maxMegabytes,
+                          @Value("${mbtiles.prewarm.backoff-ms:50}") long backoffMs) {
+        this.mbtilesRepository = mbtilesRepository;
+        this.enabled = enabled;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.chunkTiles = Math.max(1, chunkTiles);
+        this.maxBytes = maxMegabytes * MB;
+        this.backoffMs = Math.max(1, backoffMs);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-prewarm");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarmLoadedMaps() {
+        if (!enabled) {
+            return;
+        }
+        mbtilesRepository.getCurrentMapNames().forEach(this::schedule);
+    }
+
+    @EventListener
+    public void onMapRegistered(MapRegisteredEvent event) {
+        if (enabled) {
+            schedule(event.mapName());
+        }
+    }
+
+    public PrewarmStatusResponse request(String mapName) throws MBTilesReadException {
+        MapDescriptor descriptor = mbtilesRepository.getDescriptor(mapName)
+                .orElseThrow(() -> new MBTilesReadException(new RuntimeException("Карта не найдена")));
+        return schedule(descriptor.getMapName());
+    }
+
+    public PrewarmStatusResponse schedule(String mapName) {
+        PrewarmJob created = new PrewarmJob(mapName, System.currentTimeMillis());
+        PrewarmJob job = jobs.compute(mapName, (name, existing) ->
+                existing != null && !existing.isFinished() ? existing : created);
+        if (job == created) {
+            executor.execute(() -> run(job));
+        }
+        return toResponse(job);
+    }
+
+    public List<PrewarmStatusResponse> getStatuses() {
+        jobs.values().removeIf(job -> job.isFinished() && !mbtilesRepository.exists(job.getMapName()));
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(PrewarmJob::getQueuedAt))
+                .map(PrewarmService::toResponse)
+                .toList();
+    }
+
+    public Optional<PrewarmStatusResponse> getStatus(String mapName) {
+        return Optional.ofNullable(jobs.get(mapName)).map(PrewarmService::toResponse);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(PrewarmJob job) {
+        String mapName = job.getMapName();
+        try {
+            Optional<MapDescriptor> found = mbtilesRepository.getDescriptor(mapName);
+            if (found.isEmpty()) {
+                job.finished(PrewarmJob.State.CANCELLED, "Карта не найдена");
+                return;
+            }
+            MapDescriptor descriptor = found.get();
+            int from = Math.max(minZoom, descriptor.getMinZoom());
+            int to = Math.min(maxZoom, descriptor.getMaxZoom());
+            long total = 0;
+            for (int z = from; z <= to; z++) {
+                TileRange range = descriptor.getCoverage().get(z);
+                total += range != null ? range.size() : 0;
+            }
+            job.started(from, to, total);
+            long started = System.nanoTime();
+            for (int z = from; z <= to; z++) {
+                TileRange range = descriptor.getCoverage().get(z);
+                if (range != null && !warmZoom(job, z, range)) {
+                    return;
+                }
+            }
+            job.finished(PrewarmJob.State.DONE, null);
+            log.info("Прогрев карты '{}' z{}-z{} завершён за {} мс: {} тайлов, {} КБ", mapName, from, to,
+                    (System.nanoTime() - started) / 1_000_000, job.getTilesCached(), job.getBytes() / 1024);
+        } catch (MBTilesReadException e) {
+            if (mbtilesRepository.exists(mapName)) {
+                job.finished(PrewarmJob.State.FAILED, e.getMessage());
+                log.warn("Прогрев карты '{}' прерван: {}", mapName, e.getMessage());
+            } else {
+                job.finished(PrewarmJob.State.CANCELLED, "Карта выгружена");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finished(PrewarmJob.State.CANCELLED, "Прогрев остановлен");
+        } catch (RuntimeException e) {
+            job.finished(PrewarmJob.State.FAILED, e.getMessage());
+            log.error("Ошибка прогрева карты '{}': {}", mapName, e.getMessage(), e);
+        }
+    }
+
+    private boolean warmZoom(PrewarmJob job, int z, TileRange range) throws MBTilesReadException, InterruptedException {
+        int height = range.maxY() - range.minY() + 1;
+        int rows = Math.min(height, chunkTiles);
+        int columns = Math.max(1, chunkTiles / height);
+        for (int x = range.minX(); x <= range.maxX(); x += columns) {
+            for (int y = range.minY(); y <= range.maxY(); y += rows) {
+                if (!mbtilesRepository.exists(job.getMapName())) {
+                    job.finished(PrewarmJob.State.CANCELLED, "Карта выгружена");
+                    return false;
+                }
+                if (job.getBytes() >= maxBytes) {
+                    job.finished(PrewarmJob.State.LIMITED, null);
+                    log.info("Прогрев карты '{}' остановлен на z{}: достигнут лимит {} МБ", job.getMapName(), z, maxBytes / MB);
+                    return false;
+                }
+                yieldToLiveTraffic();
+                TileRange chunk = new TileRange(x, Math.min(x + columns - 1, range.maxX()),
+                        y, Math.min(y + rows - 1, range.maxY()));
+                WarmedTiles warmed = mbtilesRepository.warmTiles(job.getMapName(), z, chunk);
+                job.progress(z, warmed.scanned(), warmed.cached(), warmed.bytes());
+            }
+        }
+        return true;
+    }
+
+    // Пока идут живые запросы тайлов, прогрев ждёт; не дольше секунды на порцию, чтобы при постоянной
+    // нагрузке он всё же продвигался.
+    private void yieldToLiveTraffic() throws InterruptedException {
+        long waited = 0;
+        while (mbtilesRepository.getLiveRequests() > 0 && waited < MAX_YIELD_MS) {
+            Thread.sleep(backoffMs);
+            waited += backoffMs;
+        }
+    }
+
+    private static PrewarmStatusResponse toResponse(PrewarmJob job) {
+        return new PrewarmStatusResponse(job.getMapName(), job.getState().name(), job.getMinZoom(), job.getMaxZoom(),
+                job.getZoom(), job.getTilesTotal(), job.getTilesScanned(), job.getTilesCached(), job.getBytes(),
+                job.getStartedAt(), job.getFinishedAt(), job.getError());
+    }
+}
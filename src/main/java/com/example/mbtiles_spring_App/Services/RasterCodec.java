@@ -0,0 +1,92 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+final class RasterCodec {
+
+    private RasterCodec() {
+    }
+
+    static MediaType mediaType(String format) {
+        try {
+            return switch (format.toLowerCase()) {
+                case "png" -> MediaType.IMAGE_PNG;
+                case "jpg", "jpeg" -> MediaType.IMAGE_JPEG;
+                default -> MediaType.parseMediaType(format.contains("/") ? format : "image/" + format.toLowerCase());
+            };
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    static boolean canRead(MediaType mediaType) {
+        return "image".equals(mediaType.getType()) && ImageIO.getImageReadersByMIMEType(mediaType.toString()).hasNext();
+    }
+
+    static boolean canWrite(MediaType mediaType) {
+        return "image".equals(mediaType.getType()) && ImageIO.getImageWritersByMIMEType(mediaType.toString()).hasNext();
+    }
+
+    static BufferedImage decode(TileResponse tile) throws IOException {
+        byte[] bytes = new byte[tile.getLength()];
+        tile.getData().get(tile.getData().position(), bytes);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Нет декодировщика для " + tile.getMediaType());
+        }
+        return image;
+    }
+
+    static byte[] encode(BufferedImage image, MediaType mediaType, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mediaType.toString());
+        if (!writers.hasNext()) {
+            throw new IOException("Нет кодировщика для " + mediaType);
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed() && MediaType.IMAGE_JPEG.isCompatibleWith(mediaType)) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+        BufferedImage output = image.getColorModel().hasAlpha() && MediaType.IMAGE_JPEG.isCompatibleWith(mediaType)
+                ? opaque(image)
+                : image;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16384);
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(output, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // JPEG не хранит прозрачность: прозрачные области заливаются белым, как их показал бы браузер.
+    private static BufferedImage opaque(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.DTO.BatchTileRequest;
+import com.example.mbtiles_spring_App.DTO.TileCoordinate;
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.TileBatchPlan;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+@Service
+public class TileBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TileBatchService.class);
+    private static final int SPARSE_FACTOR = 4;
+    private static final int BUFFER_SIZE = 65536;
+    public static final int END_OF_BATCH = -1;
+
+    private final MbtilesRepository mbtilesRepository;
+    private final long maxTiles;
+
+    public TileBatchService(MbtilesRepository mbtilesRepository,
+                            @Value("${mbtiles.batch.max-tiles:50000}") long maxTiles) {
+        this.mbtilesRepository = mbtilesRepository;
+        this.maxTiles = maxTiles;
+    }
+
+    public TileBatchPlan plan(BatchTileRequest request) throws MBTilesReadException {
+        MapDescriptor descriptor = mbtilesRepository.getDescriptor(request.getMapName())
+                .orElseThrow(() -> new MBTilesReadException("Карта не найдена: " + request.getMapName(), new RuntimeException()));
+        if (request.getTiles() != null && !request.getTiles().isEmpty()) {
+            return planForList(descriptor, request.getTiles());
+        }
+        return planForBounds(descriptor, request);
+    }
+
+    private TileBatchPlan planForList(MapDescriptor descriptor, List<TileCoordinate> tiles) throws MBTilesReadException {
+        if (tiles.size() > maxTiles) {
+            throw new MBTilesReadException("Слишком много тайлов в запросе: " + tiles.size(), new RuntimeException());
+        }
+        NavigableMap<Integer, TileRange> ranges = new TreeMap<>();
+        Map<Integer, Set<Long>> requested = new HashMap<>();
+        for (TileCoordinate tile : tiles) {
+            if (!descriptor.covers(tile.getZ(), tile.getX(), tile.getY())) continue;
+            requested.computeIfAbsent(tile.getZ(), z -> new HashSet<>()).add(TileBatchPlan.key(tile.getX(), tile.getY()));
+            ranges.merge(tile.getZ(), new TileRange(tile.getX(), tile.getX(), tile.getY(), tile.getY()), TileRange::union);
+        }
+        return new TileBatchPlan(descriptor.getMapName(), ranges, requested);
+    }
+
+    private TileBatchPlan planForBounds(MapDescriptor descriptor, BatchTileRequest request) throws MBTilesReadException {
+        if (request.getMinLon() == null || request.getMinLat() == null || request.getMaxLon() == null || request.getMaxLat() == null) {
+            throw new MBTilesReadException("Нужно указать список тайлов или границы области", new RuntimeException());
+        }
+        int fromZoom = Math.max(descriptor.getMinZoom(), request.getMinZoom() != null ? request.getMinZoom() : descriptor.getMinZoom());
+        int toZoom = Math.min(descriptor.getMaxZoom(), request.getMaxZoom() != null ? request.getMaxZoom() : descriptor.getMaxZoom());
+        NavigableMap<Integer, TileRange> ranges = new TreeMap<>();
+        long total = 0;
+        for (int z = fromZoom; z <= toZoom; z++) {
+            TileRange covered = descriptor.getCoverage().get(z);
+            if (covered == null) continue;
+            TileRange range = TileRange.forBounds(z, request.getMinLon(), request.getMinLat(), request.getMaxLon(), request.getMaxLat())
+                    .intersect(covered);
+            if (range == null) continue;
+            total += range.size();
+            if (total > maxTiles) {
+                throw new MBTilesReadException("Слишком много тайлов в области, максимум " + maxTiles, new RuntimeException());
+            }
+            ranges.put(z, range);
+        }
+        return new TileBatchPlan(descriptor.getMapName(), ranges, null);
+    }
+
+    /**
+     * Пишет кадры тайлов и завершающий кадр: z = -1, x - число переданных тайлов, y - 0 при успехе или 1 при ошибке,
+     * затем длина и текст ошибки в UTF-8. Без завершающего кадра клиент считает ответ оборванным.
+     */
+    public void write(TileBatchPlan plan, OutputStream out) throws IOException {
+        DataOutputStream frames = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        String mapName = plan.getMapName();
+        int[] written = new int[1];
+        try {
+            for (Map.Entry<Integer, TileRange> entry : plan.getRanges().entrySet()) {
+                int z = entry.getKey();
+                TileRange range = entry.getValue();
+                Set<Long> requested = plan.getRequested(z);
+                if (requested != null && range.size() > (long) SPARSE_FACTOR * requested.size()) {
+                    for (long key : new TreeSet<>(requested)) {
+                        int x = (int) (key >>> 32);
+                        int y = (int) key;
+                        Optional<TileResponse> tile = mbtilesRepository.getMbtiles(mapName, z, x, y);
+                        if (tile.isPresent()) {
+                            writeHeader(frames, z, x, y, tile.get().getLength());
+                            tile.get().writeTo(frames);
+                            written[0]++;
+                        }
+                    }
+                } else {
+                    mbtilesRepository.scanTiles(mapName, z, range, (tz, x, y, data) -> {
+                        if (plan.isRequested(tz, x, y)) {
+                            writeHeader(frames, tz, x, y, data.remaining());
+                            TileResponse.write(data, frames);
+                            written[0]++;
+                        }
+                    });
+                }
+            }
+        } catch (MBTilesReadException e) {
+            logger.warn("Пакет тайлов карты {} прерван после {} тайлов: {}", mapName, written[0], e.getMessage());
+            writeTrailer(frames, written[0], String.valueOf(e.getMessage()));
+            frames.flush();
+            return;
+        }
+        writeTrailer(frames, written[0], null);
+        frames.flush();
+        logger.debug("Пакет тайлов карты {} отправлен: {} тайлов", mapName, written[0]);
+    }
+
+    private static void writeHeader(DataOutputStream frames, int z, int x, int y, int length) throws IOException {
+        frames.writeInt(z);
+        frames.writeInt(x);
+        frames.writeInt(y);
+        frames.writeInt(length);
+    }
+
+    private static void writeTrailer(DataOutputStream frames, int count, String error) throws IOException {
+        byte[] message = error != null ? error.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        writeHeader(frames, END_OF_BATCH, count, error != null ? 1 : 0, message.length);
+        frames.write(message);
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.Caches.SingleFlight;
+import com.example.mbtiles_spring_App.Caches.TileCache;
+import com.example.mbtiles_spring_App.Caches.TileKey;
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Перекодирование растровых тайлов в другой формат или качество по параметрам запроса либо заголовку Accept.
+ * Каждый вариант кэшируется отдельно. Кодирование выполняется в ограниченном пуле: если пул занят или не успел,
+ * отдаётся исходный тайл, поэтому перекодирование не может задержать обычную выдачу.
+ */
+@Service
+public class TranscodeService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodeService.class);
+
+    public record Variant(MediaType mediaType, int quality) {
+
+        String tag() {
+            return quality > 0 ? mediaType.getSubtype() + "-q" + quality : mediaType.getSubtype();
+        }
+
+        public String eTag(String eTag) {
+            return ETags.variant(eTag, tag());
+        }
+    }
+
+    private final TileCache tileCache;
+    private final boolean enabled;
+    private final List<MediaType> formats;
+    private final int defaultQuality;
+    private final int qualityStep;
+    private final long timeoutMs;
+    private final SingleFlight<TileKey, TileResponse> encodes = new SingleFlight<>(true);
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTime;
+    private final DistributionSummary ratio;
+    private final Counter fallbacks;
+
+    public TranscodeService(TileCache tileCache,
+                            MeterRegistry meterRegistry,
+                            @Value("${mbtiles.transcode.enabled:true}") boolean enabled,
+                            @Value("${mbtiles.transcode.formats:image/jpeg,image/png}") List<String> formats,
+                            @Value("${mbtiles.transcode.default-quality:75}") int defaultQuality,
+                            @Value("${mbtiles.transcode.quality-step:5}") int qualityStep,
+                            @Value("${mbtiles.transcode.threads:2}") int threads,
+                            @Value("${mbtiles.transcode.queue-size:64}") int queueSize,
+                            @Value("${mbtiles.transcode.timeout-ms:500}") long timeoutMs) {
+        this.tileCache = tileCache;
+        this.enabled = enabled;
+        this.formats = formats.stream().map(RasterCodec::mediaType).filter(RasterCodec::canWrite).toList();
+        this.qualityStep = Math.max(1, qualityStep);
+        this.defaultQuality = quantize(defaultQuality);
+        this.timeoutMs = timeoutMs;
+        int workers = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+            Thread thread = new Thread(runnable, "mbtiles-transcode");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.encodeTime = Timer.builder("mbtiles.tile.transcode")
+                .description("Время перекодирования тайла")
+                .register(meterRegistry);
+        this.ratio = DistributionSummary.builder("mbtiles.tile.transcode.ratio")
+                .description("Отношение размера перекодированного тайла к исходному")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("mbtiles.tile.transcode.fallbacks")
+                .description("Тайлы, отданные без перекодирования из-за занятого пула или ошибки")
+                .register(meterRegistry);
+    }
+
+    /** Ответ зависит от Accept, если карта растровая и перекодирование включено. */
+    public boolean isNegotiable(MapDescriptor descriptor) {
+        return enabled && !formats.isEmpty() && RasterCodec.canRead(descriptor.getMediaType());
+    }
+
+    /**
+     * Выбирает вариант тайла: явный format/quality важнее Accept. Пустой результат означает исходный тайл.
+     */
+    public Optional<Variant> negotiate(MapDescriptor descriptor, String format, Integer quality, List<MediaType> accept)
+            throws MBTilesReadException {
+        if (!isNegotiable(descriptor)) {
+            if (format != null || quality != null) {
+                throw new MBTilesReadException("Перекодирование недоступно для карты " + descriptor.getMapName(), new RuntimeException());
+            }
+            return Optional.empty();
+        }
+        MediaType stored = descriptor.getMediaType();
+        MediaType target;
+        if (format != null && !format.isBlank()) {
+            target = RasterCodec.mediaType(format);
+            if (formats.stream().noneMatch(allowed -> allowed.equalsTypeAndSubtype(target))) {
+                throw new MBTilesReadException("Неподдерживаемый формат: " + format, new RuntimeException());
+            }
+        } else if (quality != null) {
+            target = stored;
+        } else {
+            target = fromAccept(stored, accept);
+            if (target == null) {
+                return Optional.empty();
+            }
+        }
+        if (!MediaType.IMAGE_JPEG.equalsTypeAndSubtype(target)) {
+            // Качество задаётся только для сжатия с потерями, повторное кодирование без потерь ничего не даёт
+            return target.equalsTypeAndSubtype(stored) ? Optional.empty() : Optional.of(new Variant(target, 0));
+        }
+        return Optional.of(new Variant(MediaType.IMAGE_JPEG, quality != null ? quantize(quality) : defaultQuality));
+    }
+
+    public TileResponse transcode(TileResponse tile, Variant variant, int z, int x, int y) throws MBTilesReadException {
+        if (tile.isGzipped()) {
+            return tile;
+        }
+        TileKey key = TileKey.variant(tile.getDescriptor().getMapName(), variant.tag(), z, x, y);
+        TileResponse cached = tileCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        TileResponse encoded = encodes.load(key, () -> encode(tile, variant, key));
+        return encoded != null ? encoded : tile;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private TileResponse encode(TileResponse tile, Variant variant, TileKey key) {
+        Future<TileResponse> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                byte[] data = RasterCodec.encode(RasterCodec.decode(tile), variant.mediaType(), variant.quality() / 100f);
+                encodeTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                ratio.record((double) data.length / Math.max(1, tile.getLength()));
+                String eTag = tile.getETag() != null ? variant.eTag(tile.getETag()) : ETags.forContent(data);
+                TileResponse encoded = new TileResponse(data, variant.mediaType(), eTag, tile.getDescriptor());
+                tileCache.put(key, encoded);
+                return encoded;
+            });
+        } catch (RejectedExecutionException e) {
+            fallbacks.increment();
+            return null;
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Кодирование продолжится в пуле и попадёт в кэш, но текущий запрос его не ждёт
+            fallbacks.increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        } catch (ExecutionException e) {
+            fallbacks.increment();
+            log.warn("Не удалось перекодировать тайл {}: {}", key, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    // Выбирается формат, который клиент явно предпочитает исходному; без явного предпочтения тайл не перекодируется
+    private MediaType fromAccept(MediaType stored, List<MediaType> accept) {
+        if (accept.isEmpty()) {
+            return null;
+        }
+        double best = acceptQuality(stored, accept);
+        MediaType target = null;
+        for (MediaType type : accept) {
+            if (type.isWildcardType() || type.isWildcardSubtype() || type.getQualityValue() <= best) {
+                continue;
+            }
+            for (MediaType allowed : formats) {
+                if (allowed.equalsTypeAndSubtype(type)) {
+                    target = allowed;
+                    best = type.getQualityValue();
+                }
+            }
+        }
+        return target;
+    }
+
+    private static double acceptQuality(MediaType stored, List<MediaType> accept) {
+        double quality = 0;
+        int specificity = -1;
+        for (MediaType type : accept) {
+            if (!type.includes(stored)) {
+                continue;
+            }
+            int current = type.isWildcardType() ? 0 : type.isWildcardSubtype() ? 1 : 2;
+            if (current > specificity) {
+                specificity = current;
+                quality = type.getQualityValue();
+            }
+        }
+        return quality;
+    }
+
+    // Качество округляется до шага, чтобы число вариантов в кэше оставалось небольшим
+    private int quantize(int quality) {
+        int clamped = Math.min(100, Math.max(1, quality));
+        return Math.max(qualityStep, Math.round((float) clamped / qualityStep) * qualityStep);
+    }
+}
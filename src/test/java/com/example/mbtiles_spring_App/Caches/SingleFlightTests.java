@@ -0,0 +1,131 @@
+package com.example.mbtiles_spring_App.Caches;
+
+import com.example.mbtiles_spring_App.Exceptions.ReadRejectedException;
+import org.imintel.mbtiles4j.MBTilesReadException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTests {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(true);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = callConcurrently(flight, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "tile";
+        }, release);
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("tile");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(flight.getLoads()).isEqualTo(1);
+        assertThat(flight.getCoalesced()).isEqualTo(CALLERS - 1);
+        assertThat(flight.getInFlight()).isZero();
+    }
+
+    @Test
+    void failureReachesEveryWaiterUnchangedAndIsNotRemembered() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(true);
+        CountDownLatch release = new CountDownLatch(1);
+        ReadRejectedException rejected = new ReadRejectedException("Очередь переполнена");
+
+        List<Future<String>> results = callConcurrently(flight, () -> {
+            await(release);
+            throw rejected;
+        }, release);
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isSameAs(rejected);
+        }
+        assertThat(flight.load("key", () -> "retry")).isEqualTo("retry");
+    }
+
+    @Test
+    void errorInLeaderReleasesWaiters() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(true);
+        CountDownLatch release = new CountDownLatch(1);
+        OutOfMemoryError error = new OutOfMemoryError("Java heap space");
+
+        List<Future<String>> results = callConcurrently(flight, () -> {
+            await(release);
+            throw error;
+        }, release);
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isSameAs(error);
+        }
+        assertThat(flight.getInFlight()).isZero();
+    }
+
+    @Test
+    void disabledFlightLoadsEveryTime() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(false);
+        AtomicInteger loads = new AtomicInteger();
+
+        flight.load("key", loads::incrementAndGet);
+        flight.load("key", loads::incrementAndGet);
+
+        assertThat(loads).hasValue(2);
+        assertThat(flight.getCoalesced()).isZero();
+    }
+
+    // Загрузка отпускается, только когда все вызывающие уже ждут её результата
+    private static List<Future<String>> callConcurrently(SingleFlight<String, String> flight,
+                                                         SingleFlight.Loader<String> loader,
+                                                         CountDownLatch release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> flight.load("key", loader)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (flight.getLoads() + flight.getCoalesced() < CALLERS && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException ignored) {
+                    // Проверяется вызывающим тестом
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws MBTilesReadException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MBTilesReadException("Ожидание прервано", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mbtiles_spring_App.Caches;
+
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileCacheTests {
+
+    private static final int MB = 1048576;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void evictionKeepsBytesWithinLimit() {
+        TileCache cache = new TileCache(registry, true, 1, 1000);
+        for (int i = 0; i < 64; i++) {
+            cache.put(new TileKey("m", 8, i, 0), tile(filled(64 * 1024, i)));
+            assertThat(cache.getStoredBytes()).isLessThanOrEqualTo(MB);
+        }
+        long cached = IntStream.range(0, 64).filter(i -> cache.get(new TileKey("m", 8, i, 0)) != null).count();
+        assertThat(cached).isBetween(1L, 16L);
+        assertThat(registry.get("mbtiles.tile.cache.bytes").tag("kind", "logical").gauge().value()).isLessThanOrEqualTo(MB);
+    }
+
+    @Test
+    void eTagOutlivesEvictedTile() {
+        TileCache cache = new TileCache(registry, true, 1, 1000);
+        TileKey key = new TileKey("m", 8, 0, 0);
+        // Тайл больше всего лимита вытесняется сразу после записи
+        TileResponse tile = tile(filled(2 * MB, 0));
+        cache.put(key, tile);
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.getETag(key)).isEqualTo(tile.getETag());
+    }
+
+    @Test
+    void invalidateMapDropsOnlyThatMap() {
+        TileCache cache = new TileCache(registry, true, 1, 1000);
+        cache.put(new TileKey("a", 1, 0, 0), tile(filled(10, 1)));
+        cache.put(new TileKey("b", 1, 0, 0), tile(filled(10, 2)));
+
+        cache.invalidateMap("a");
+
+        assertThat(cache.get(new TileKey("a", 1, 0, 0))).isNull();
+        assertThat(cache.getETag(new TileKey("a", 1, 0, 0))).isNull();
+        assertThat(cache.get(new TileKey("b", 1, 0, 0))).isNotNull();
+    }
+
+    @Test
+    void sharedContentIsStoredOnceAndChargedWhileReferenced() {
+        TileCache cache = new TileCache(registry, true, 1, 1000);
+        byte[] sea = filled(100_000, 1);
+        String hash = ETags.contentHash(ByteBuffer.wrap(sea));
+
+        TileResponse first = cache.put(new TileKey("a", 5, 1, 1), tile(sea.clone()), hash);
+        TileResponse second = cache.put(new TileKey("b", 5, 1, 1), tile(sea.clone()), hash);
+
+        assertThat(second.getBlob()).isSameAs(first.getBlob());
+        assertThat(cache.getStoredBytes()).isEqualTo(sea.length);
+        assertThat(cache.getDedupRatio()).isEqualTo(2.0);
+        assertThat(registry.get("mbtiles.tile.cache.blobs").gauge().value()).isEqualTo(1.0);
+
+        // Первый владелец ушёл, но второй всё ещё ссылается на содержимое - байты остаются в учёте
+        cache.invalidateMap("a");
+        assertThat(cache.getStoredBytes()).isEqualTo(sea.length);
+        assertThat(cache.get(new TileKey("b", 5, 1, 1)).getData()).isEqualTo(ByteBuffer.wrap(sea));
+
+        cache.invalidateMap("b");
+        assertThat(cache.getStoredBytes()).isZero();
+        assertThat(registry.get("mbtiles.tile.cache.blobs").gauge().value()).isZero();
+    }
+
+    @Test
+    void evictionKeepsSharedBytesWithinLimit() {
+        TileCache cache = new TileCache(registry, true, 1, 1000);
+        for (int i = 0; i < 64; i++) {
+            byte[] data = filled(64 * 1024, i);
+            cache.put(new TileKey("m", 8, i, 0), tile(data), ETags.contentHash(ByteBuffer.wrap(data)));
+            assertThat(cache.getStoredBytes()).isLessThanOrEqualTo(MB);
+        }
+        long cached = IntStream.range(0, 64).filter(i -> cache.get(new TileKey("m", 8, i, 0)) != null).count();
+        assertThat(cached).isBetween(1L, 16L);
+        // Вытесненные записи освободили свои блоки: в таблице остались только те, на которые ещё ссылаются
+        assertThat(registry.get("mbtiles.tile.cache.blobs").gauge().value()).isEqualTo(cached);
+    }
+
+    @Test
+    void tileIdHashIsScopedToMapVersion() {
+        TileCache cache = new TileCache(registry, true, 1, 1000);
+        ByteBuffer before = ByteBuffer.wrap(filled(10, 1));
+        ByteBuffer after = ByteBuffer.wrap(filled(10, 2));
+
+        String hash = cache.contentHash("m", 1, "t1", before);
+        // Тот же tileId в той же версии карты не хешируется повторно
+        assertThat(cache.contentHash("m", 1, "t1", after)).isEqualTo(hash);
+        assertThat(cache.contentHash("m", 2, "t1", after)).isEqualTo(ETags.contentHash(after)).isNotEqualTo(hash);
+    }
+
+    @Test
+    void disabledCacheKeepsNothing() {
+        TileCache cache = new TileCache(registry, false, 1, 1000);
+        TileKey key = new TileKey("m", 1, 0, 0);
+
+        byte[] data = filled(10, 1);
+
+        TileResponse returned = cache.put(key, tile(data), ETags.contentHash(ByteBuffer.wrap(data)));
+
+        assertThat(returned.getBlob()).isNull();
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.getETag(key)).isNull();
+        assertThat(cache.contentHash("m", 1, "t1", ByteBuffer.wrap(data))).isNull();
+    }
+
+    private static TileResponse tile(byte[] data) {
+        return new TileResponse(data, MediaType.IMAGE_PNG, ETags.forContent(data), null);
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+}
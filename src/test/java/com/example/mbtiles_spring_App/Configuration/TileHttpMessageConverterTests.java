@@ -0,0 +1,78 @@
+package com.example.mbtiles_spring_App.Configuration;
+
+import com.example.mbtiles_spring_App.DTO.TileResponse;
+import com.example.mbtiles_spring_App.Metrics.TileMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileHttpMessageConverterTests {
+
+    private final TileHttpMessageConverter converter = new TileHttpMessageConverter(new TileMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void sliceOfHeapBufferIsWrittenWithItsOwnLength() throws Exception {
+        byte[] page = random(4096, 1);
+        // Как срез страницы: тайл занимает середину общего массива
+        ByteBuffer slice = ByteBuffer.wrap(page, 1000, 700).slice();
+
+        MockHttpOutputMessage message = write(new TileResponse(slice, MediaType.IMAGE_PNG, null, null));
+
+        assertThat(message.getHeaders().getContentLength()).isEqualTo(700);
+        assertThat(message.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(message.getBodyAsBytes()).isEqualTo(Arrays.copyOfRange(page, 1000, 1700));
+    }
+
+    @Test
+    void directBufferIsCopiedInChunksByteForByte() throws Exception {
+        byte[] content = random(300_000, 2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.length + 10);
+        direct.position(10);
+        direct.put(content);
+        direct.position(10);
+
+        MockHttpOutputMessage message = write(new TileResponse(direct, MediaType.IMAGE_JPEG, null, null));
+
+        assertThat(message.getHeaders().getContentLength()).isEqualTo(content.length);
+        assertThat(message.getBodyAsBytes()).isEqualTo(content);
+    }
+
+    @Test
+    void writingDoesNotConsumeTheBuffer() throws Exception {
+        byte[] content = random(1024, 3);
+        TileResponse tile = new TileResponse(ByteBuffer.allocateDirect(content.length).put(content).flip(),
+                MediaType.IMAGE_PNG, null, null);
+
+        // Кэшированный тайл отдаётся многим клиентам: вторая запись должна совпадать с первой
+        assertThat(write(tile).getBodyAsBytes()).isEqualTo(content);
+        assertThat(write(tile).getBodyAsBytes()).isEqualTo(content);
+        assertThat(tile.getLength()).isEqualTo(content.length);
+    }
+
+    @Test
+    void emptyTileHasZeroLength() throws Exception {
+        MockHttpOutputMessage message = write(new TileResponse(new byte[0], MediaType.IMAGE_PNG, null, null));
+
+        assertThat(message.getHeaders().getContentLength()).isZero();
+        assertThat(message.getBodyAsBytes()).isEmpty();
+    }
+
+    private MockHttpOutputMessage write(TileResponse tile) throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(tile, null, message);
+        return message;
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
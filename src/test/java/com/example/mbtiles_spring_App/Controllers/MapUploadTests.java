@@ -0,0 +1,130 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.example.mbtiles_spring_App.Services.MapUploadService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.upload.session-ttl-minutes=60"
+})
+@AutoConfigureMockMvc
+class MapUploadTests {
+
+    private static Path storage;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MapUploadService mapUploadService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        storage = Files.createTempDirectory("mbtiles-upload");
+        registry.add("mbtiles.map.storage.dir", storage::toString);
+    }
+
+    @Test
+    void interruptedUploadResumesFromReportedOffsetAndPublishes() throws Exception {
+        SyntheticMbtiles map = SyntheticMbtiles.builder().name("uploaded").zooms(0, 3).tileSize(1024);
+        byte[] file = Files.readAllBytes(map.write(Files.createTempFile("upload", ".mbtiles")));
+        String id = start("uploaded", file.length);
+        int half = file.length / 2;
+
+        chunk(id, 0, Arrays.copyOfRange(file, 0, half)).andExpect(status().isOk());
+        // Смещение за пределами принятого - ошибка, принятые данные не теряются
+        chunk(id, half + 1, Arrays.copyOfRange(file, half + 1, file.length)).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/mbtiles/uploads/" + id))
+                .andExpect(jsonPath("$.receivedBytes").value(half))
+                .andExpect(jsonPath("$.state").value("RECEIVING"));
+
+        // Повтор с перекрытием: клиент не знает, дошёл ли хвост предыдущей части
+        int resumeFrom = half - 100;
+        chunk(id, resumeFrom, Arrays.copyOfRange(file, resumeFrom, file.length))
+                .andExpect(jsonPath("$.receivedBytes").value(file.length));
+
+        mockMvc.perform(post("/api/v1/mbtiles/uploads/" + id + "/complete"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("PUBLISHED"));
+
+        TileRange range = map.range(3);
+        mockMvc.perform(get("/api/v1/mbtiles/3/" + range.minX() + "/" + range.minY() + "?mapName=uploaded"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(map.tile(3, range.minX(), range.minY())));
+    }
+
+    @Test
+    void fileWithoutSqliteHeaderFailsOnFirstChunk() throws Exception {
+        String id = start("garbage", -1);
+        byte[] garbage = new byte[4096];
+        Arrays.fill(garbage, (byte) 'x');
+
+        chunk(id, 0, garbage).andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/mbtiles/uploads/" + id))
+                .andExpect(jsonPath("$.state").value("FAILED"));
+        assertThat(uploadFiles()).noneMatch(name -> name.startsWith(id));
+    }
+
+    @Test
+    void sweepDropsIdleSessionsWithTheirFiles() throws Exception {
+        String id = start("idle", -1);
+        chunk(id, 0, new byte[]{1, 2, 3}).andExpect(status().isOk());
+
+        mapUploadService.sweep(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(61));
+
+        mockMvc.perform(get("/api/v1/mbtiles/uploads/" + id)).andExpect(status().isBadRequest());
+        assertThat(uploadFiles()).noneMatch(name -> name.startsWith(id));
+    }
+
+    private static List<String> uploadFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storage.resolve(".uploads"))) {
+            return files.map(file -> file.getFileName().toString()).toList();
+        }
+    }
+
+    private String start(String mapName, long size) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/mbtiles/uploads").param("mapName", mapName).param("size", Long.toString(size)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode status = objectMapper.readTree(body);
+        return status.get("uploadId").asText();
+    }
+
+    private ResultActions chunk(String id, long offset, byte[] data) throws Exception {
+        return mockMvc.perform(put("/api/v1/mbtiles/uploads/" + id).param("offset", Long.toString(offset))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM).content(data));
+    }
+}
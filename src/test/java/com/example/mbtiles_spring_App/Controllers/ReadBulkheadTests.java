@@ -0,0 +1,94 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.tile-cache.enabled=false",
+        "mbtiles.coalescing.enabled=false",
+        "mbtiles.archive.enabled=false",
+        "mbtiles.sqlite.pool-size=32",
+        "mbtiles.sqlite.max-waiting=64",
+        "mbtiles.sqlite.max-concurrent-reads=1",
+        "mbtiles.sqlite.acquire-timeout-ms=1"
+})
+@AutoConfigureMockMvc
+class ReadBulkheadTests {
+
+    private static final int CLIENTS = 32;
+    private static final int ROUNDS = 20;
+    private static final SyntheticMbtiles MAP = SyntheticMbtiles.builder().name("busy").zooms(0, 3).tileSize(256 * 1024);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-bulkhead");
+        MAP.write(dir.resolve("busy.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void readsBeyondThePermitsAreRejectedWith503AndRetryAfter() throws Exception {
+        List<int[]> tiles = MAP.sample(CLIENTS, 9);
+        MockHttpServletResponse rejected = null;
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            // Соединений хватает всем, но общий лимит пропускает одно чтение: остальные должны получать отказ, а не ждать
+            for (int round = 0; round < ROUNDS && rejected == null; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+                for (int[] tile : tiles) {
+                    responses.add(executor.submit(() -> {
+                        start.await();
+                        return mockMvc.perform(get("/api/v1/mbtiles/" + tile[0] + "/" + tile[1] + "/" + tile[2])
+                                .param("mapName", "busy")).andReturn().getResponse();
+                    }));
+                }
+                start.countDown();
+                for (Future<MockHttpServletResponse> future : responses) {
+                    MockHttpServletResponse response = future.get(30, TimeUnit.SECONDS);
+                    assertThat(response.getStatus()).isIn(200, 503);
+                    if (response.getStatus() == 503) {
+                        rejected = response;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(rejected).isNotNull();
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(rejected.getContentAsString()).contains("Превышен общий лимит чтений SQLite");
+
+        // После пика карта снова отвечает
+        int[] tile = tiles.get(0);
+        assertThat(mockMvc.perform(get("/api/v1/mbtiles/" + tile[0] + "/" + tile[1] + "/" + tile[2]).param("mapName", "busy"))
+                .andReturn().getResponse().getStatus()).isEqualTo(200);
+    }
+}
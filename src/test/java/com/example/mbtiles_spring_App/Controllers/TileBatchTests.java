@@ -0,0 +1,132 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.example.mbtiles_spring_App.Services.TileBatchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false"
+})
+@AutoConfigureMockMvc
+class TileBatchTests {
+
+    private static final SyntheticMbtiles MAP = SyntheticMbtiles.builder().name("batch").zooms(0, 4).tileSize(256)
+            .coverage(0.5).seed(7);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-batch");
+        MAP.write(dir.resolve("batch.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void boundsBatchStreamsEveryStoredTileAndTrailer() throws Exception {
+        Batch batch = batch("""
+                {"mapName": "batch", "minLon": -180, "minLat": -85, "maxLon": 180, "maxLat": 85, "minZoom": 3, "maxZoom": 4}
+                """);
+
+        int expected = 0;
+        for (int z = 3; z <= 4; z++) {
+            TileRange range = MAP.range(z);
+            for (int x = range.minX(); x <= range.maxX(); x++) {
+                for (int y = range.minY(); y <= range.maxY(); y++) {
+                    if (MAP.contains(z, x, y)) expected++;
+                }
+            }
+        }
+        assertThat(batch.frames()).hasSize(expected);
+        for (Frame frame : batch.frames()) {
+            assertThat(MAP.contains(frame.z(), frame.x(), frame.y())).isTrue();
+            assertThat(frame.data()).isEqualTo(MAP.tile(frame.z(), frame.x(), frame.y()));
+        }
+        assertThat(batch.trailer()).isEqualTo(new Frame(TileBatchService.END_OF_BATCH, expected, 0, new byte[0]));
+    }
+
+    @Test
+    void listBatchSkipsMissingTiles() throws Exception {
+        List<int[]> present = MAP.sample(5, 3);
+        StringBuilder tiles = new StringBuilder();
+        for (int[] tile : present) {
+            tiles.append("{\"z\": ").append(tile[0]).append(", \"x\": ").append(tile[1]).append(", \"y\": ").append(tile[2]).append("},");
+        }
+        // Тайл вне покрытия карты пропускается молча
+        tiles.append("{\"z\": 5, \"x\": 0, \"y\": 0}");
+
+        Batch batch = batch("{\"mapName\": \"batch\", \"tiles\": [" + tiles + "]}");
+
+        assertThat(batch.frames()).extracting(frame -> List.of(frame.z(), frame.x(), frame.y()))
+                .containsExactlyInAnyOrderElementsOf(present.stream().map(tile -> List.of(tile[0], tile[1], tile[2])).distinct().toList());
+        assertThat(batch.trailer().x()).isEqualTo(batch.frames().size());
+        assertThat(batch.trailer().y()).isZero();
+    }
+
+    @Test
+    void unknownMapIsRejectedBeforeStreaming() throws Exception {
+        mockMvc.perform(post("/api/v1/mbtiles/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mapName\": \"missing\", \"tiles\": [{\"z\": 0, \"x\": 0, \"y\": 0}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Batch batch(String request) throws Exception {
+        MvcResult started = mockMvc.perform(post("/api/v1/mbtiles/batch").contentType(MediaType.APPLICATION_JSON).content(request))
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        List<Frame> frames = new ArrayList<>();
+        while (true) {
+            Frame frame = new Frame(in.readInt(), in.readInt(), in.readInt(), in.readNBytes(in.readInt()));
+            if (frame.z() == TileBatchService.END_OF_BATCH) {
+                assertThat(in.available()).isZero();
+                return new Batch(frames, frame);
+            }
+            frames.add(frame);
+        }
+    }
+
+    private record Frame(int z, int x, int y, byte[] data) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Frame frame && z == frame.z && x == frame.x && y == frame.y
+                    && Arrays.equals(data, frame.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(z, x, y, Arrays.hashCode(data));
+        }
+    }
+
+    private record Batch(List<Frame> frames, Frame trailer) {
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.http.cache-max-age=600"
+})
+@AutoConfigureMockMvc
+class TileHttpCachingTests {
+
+    private static final SyntheticMbtiles MAP = SyntheticMbtiles.builder().name("cached").zooms(0, 3).tileSize(512);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-http-caching");
+        MAP.write(dir.resolve("cached.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void tileCarriesValidatorsAndAnswersConditionalRequests() throws Exception {
+        String tile = tilePath(3);
+        MvcResult first = mockMvc.perform(get(tile))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=600, public"))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).startsWith("\"").endsWith("\"");
+
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_NONE_MATCH, "W/" + eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_MODIFIED_SINCE, first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+    }
+
+    @Test
+    void eTagIsStableAcrossCacheStates() throws Exception {
+        String tile = tilePath(2);
+        String cold = mockMvc.perform(get(tile)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String warm = mockMvc.perform(get(tile)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(warm).isEqualTo(cold);
+    }
+
+    @Test
+    void mapInfoAnswersConditionalRequests() throws Exception {
+        String eTag = mockMvc.perform(get("/api/v1/mbtiles/cached"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=600, public"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/mbtiles/cached").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void mapLessTileAnswersConditionalRequests() throws Exception {
+        TileRange range = MAP.range(1);
+        String tile = "/api/v1/mbtiles/1/" + range.minX() + "/" + range.minY();
+        String eTag = mockMvc.perform(get(tile))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=600, public"));
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void notModifiedCheckIsNotCountedAsCacheLookup() throws Exception {
+        String tile = tilePath(3);
+        String eTag = mockMvc.perform(get(tile)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        double lookups = cacheLookups();
+
+        mockMvc.perform(get(tile).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        assertThat(cacheLookups()).isEqualTo(lookups);
+    }
+
+    private double cacheLookups() {
+        return meterRegistry.get("cache.gets").tag("cache", "mbtiles.tiles").functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+    }
+
+    private static String tilePath(int z) {
+        TileRange range = MAP.range(z);
+        return "/api/v1/mbtiles/" + z + "/" + range.minX() + "/" + range.minY() + "?mapName=cached";
+    }
+}
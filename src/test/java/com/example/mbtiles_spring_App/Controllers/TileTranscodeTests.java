@@ -0,0 +1,122 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.Caches.ETags;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.transcode.formats=image/jpeg,image/png",
+        "mbtiles.transcode.default-quality=75",
+        "mbtiles.transcode.timeout-ms=10000"
+})
+@AutoConfigureMockMvc
+class TileTranscodeTests {
+
+    private static final SyntheticMbtiles RASTER = SyntheticMbtiles.builder().name("raster").zooms(0, 2).images(64);
+    private static final SyntheticMbtiles VECTOR = SyntheticMbtiles.builder().name("vector").format("pbf").zooms(0, 2);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-transcode");
+        RASTER.write(dir.resolve("raster.mbtiles"));
+        VECTOR.write(dir.resolve("vector.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void formatParameterSelectsJpegVariant() throws Exception {
+        String original = tile(null).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletResponse jpeg = mockMvc.perform(get(tilePath("raster")).param("format", "jpeg"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andReturn().getResponse();
+
+        assertThat(jpeg.getHeader(HttpHeaders.ETAG)).isEqualTo(ETags.variant(original, "jpeg-q75"));
+        assertThat(jpeg.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg.getContentAsByteArray()));
+        assertThat(image.getWidth()).isEqualTo(64);
+    }
+
+    @Test
+    void qualityIsRoundedToStep() throws Exception {
+        mockMvc.perform(get(tilePath("raster")).param("format", "jpeg").param("quality", "42"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, endsWith("-jpeg-q40\"")));
+    }
+
+    @Test
+    void acceptHeaderIsNegotiated() throws Exception {
+        // Исходный PNG клиенту не нужен, поэтому отдаётся JPEG
+        assertThat(tile(MediaType.IMAGE_JPEG.toString()).getContentType()).isEqualTo(MediaType.IMAGE_JPEG_VALUE);
+        // PNG предпочтительнее JPEG, перекодировать нечего
+        assertThat(tile("image/png, image/jpeg;q=0.5").getContentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+        // Подстановочный тип не является явным предпочтением
+        assertThat(tile("*/*").getContentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+    }
+
+    @Test
+    void variantETagAnswersConditionalRequest() throws Exception {
+        String eTag = mockMvc.perform(get(tilePath("raster")).param("format", "jpeg"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String original = tile(null).getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(tilePath("raster")).param("format", "jpeg").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(tilePath("raster")).param("format", "jpeg").header(HttpHeaders.IF_NONE_MATCH, original))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void unsupportedRequestsAreRejected() throws Exception {
+        mockMvc.perform(get(tilePath("raster")).param("format", "gif"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(tilePath("vector")).param("format", "jpeg"))
+                .andExpect(status().isBadRequest());
+        // Векторная карта не зависит от Accept
+        mockMvc.perform(get(tilePath("vector")).header(HttpHeaders.ACCEPT, MediaType.IMAGE_JPEG_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.VARY));
+    }
+
+    private MockHttpServletResponse tile(String accept) throws Exception {
+        var request = get(tilePath("raster"));
+        if (accept != null) {
+            request.header(HttpHeaders.ACCEPT, accept);
+        }
+        return mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse();
+    }
+
+    private static String tilePath(String mapName) {
+        TileRange range = RASTER.range(2);
+        return "/api/v1/mbtiles/2/" + range.minX() + "/" + range.minY() + "?mapName=" + mapName;
+    }
+}
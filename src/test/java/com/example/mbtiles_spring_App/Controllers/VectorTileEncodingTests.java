@@ -0,0 +1,94 @@
+package com.example.mbtiles_spring_App.Controllers;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false"
+})
+@AutoConfigureMockMvc
+class VectorTileEncodingTests {
+
+    private static final SyntheticMbtiles MAP = SyntheticMbtiles.builder().name("roads").format("pbf").gzip(true)
+            .zooms(0, 2).tileSize(2048);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-vector-encoding");
+        MAP.write(dir.resolve("roads.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void gzipClientGetsStoredBytesAsIs() throws Exception {
+        MvcResult result = mockMvc.perform(get(tilePath()).header(HttpHeaders.ACCEPT_ENCODING, "br, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-protobuf"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+
+        byte[] body = result.getResponse().getContentAsByteArray();
+        assertThat(gunzip(body)).isEqualTo(expected());
+    }
+
+    @Test
+    void identityClientGetsDecompressedTileUnderItsOwnETag() throws Exception {
+        String gzipETag = mockMvc.perform(get(tilePath()).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult identity = mockMvc.perform(get(tilePath()).header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().bytes(expected()))
+                .andReturn();
+        String identityETag = identity.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(identityETag).isNotEqualTo(gzipETag).endsWith("-identity\"");
+
+        // Сжатая версия, закэшированная клиентом, не подходит тому, кто сжатие не принимает
+        mockMvc.perform(get(tilePath()).header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(tilePath()).header(HttpHeaders.IF_NONE_MATCH, identityETag))
+                .andExpect(status().isNotModified());
+    }
+
+    private static byte[] expected() {
+        TileRange range = MAP.range(2);
+        return MAP.tile(2, range.minX(), range.minY());
+    }
+
+    private static String tilePath() {
+        TileRange range = MAP.range(2);
+        return "/api/v1/mbtiles/2/" + range.minX() + "/" + range.minY() + "?mapName=roads";
+    }
+
+    private static byte[] gunzip(byte[] data) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+}
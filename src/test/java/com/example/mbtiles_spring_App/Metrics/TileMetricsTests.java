@@ -0,0 +1,92 @@
+package com.example.mbtiles_spring_App.Metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TileMetrics metrics = new TileMetrics(registry);
+
+    @Test
+    void requestIsTaggedWithLogicalMapAndZoom() {
+        metrics.recordRequest("world!100", 3, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.recordRequest("world!200", 3, TimeUnit.MILLISECONDS.toNanos(7));
+
+        // Версии одной карты пишутся в один ряд, иначе каждая перезагрузка порождала бы новые ряды
+        Timer request = registry.get("mbtiles.tile.request").tags("map", "world", "zoom", "3").timer();
+        assertThat(request.count()).isEqualTo(2);
+        assertThat(request.max(TimeUnit.MILLISECONDS)).isEqualTo(7);
+
+        Timer latency = registry.get("mbtiles.tile.request.latency").tag("map", "world").timer();
+        assertThat(latency.count()).isEqualTo(2);
+        assertThat(latency.getId().getTag("zoom")).isNull();
+    }
+
+    @Test
+    void lookupsAreCountedByResult() {
+        metrics.recordLookup("world!1", 5, TileMetrics.Lookup.HIT);
+        metrics.recordLookup("world!1", 5, TileMetrics.Lookup.HIT);
+        metrics.recordLookup("world!1", 5, TileMetrics.Lookup.MISS);
+        metrics.recordLookup(TileMetrics.ANY_MAP, 5, TileMetrics.Lookup.NOT_FOUND);
+        metrics.recordLookup(null, 5, TileMetrics.Lookup.NOT_FOUND);
+
+        assertThat(lookups("world", "hit")).isEqualTo(2);
+        assertThat(lookups("world", "miss")).isEqualTo(1);
+        assertThat(lookups("world", "not_found")).isZero();
+        assertThat(lookups("*", "not_found")).isEqualTo(2);
+    }
+
+    @Test
+    void zoomTagsAreCapped() {
+        for (int z = -1; z <= 64; z++) {
+            metrics.recordRequest("deep", z, 1);
+            metrics.recordLookup("deep", z, TileMetrics.Lookup.MISS);
+        }
+
+        Set<String> zooms = registry.find("mbtiles.tile.request").tag("map", "deep").timers().stream()
+                .map(timer -> timer.getId().getTag("zoom"))
+                .collect(Collectors.toSet());
+        assertThat(zooms).hasSize(33).contains("0", "31", "32+").doesNotContain("-1", "33", "64");
+        assertThat(registry.get("mbtiles.tile.request").tags("map", "deep", "zoom", "32+").timer().count()).isEqualTo(33);
+        assertThat(registry.get("mbtiles.tile.request").tags("map", "deep", "zoom", "0").timer().count()).isEqualTo(2);
+        assertThat(registry.find("mbtiles.tile.lookups").tag("map", "deep").counters()).hasSize(33 * 3);
+    }
+
+    @Test
+    void serializationRecordsTimeAndBytes() {
+        metrics.recordSerialization("world!1", 2048, TimeUnit.MICROSECONDS.toNanos(30));
+        metrics.recordSqlite("world!1", 2, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(registry.get("mbtiles.tile.bytes").tag("map", "world").summary().totalAmount()).isEqualTo(2048);
+        assertThat(registry.get("mbtiles.tile.serialization").tag("map", "world").timer().count()).isEqualTo(1);
+        assertThat(registry.get("mbtiles.tile.sqlite").tags("map", "world", "zoom", "2").timer().count()).isEqualTo(1);
+        assertThat(registry.get("mbtiles.tile.sqlite.latency").tag("map", "world").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void everyTileMeterCarriesOnlyBoundedTags() {
+        metrics.recordRequest("world!1", 1, 1);
+        metrics.recordLookup("world!1", 1, TileMetrics.Lookup.HIT);
+        metrics.recordSerialization("world!1", 1, 1);
+
+        Set<String> allowed = Set.of("map", "zoom", "result");
+        for (Meter meter : registry.getMeters()) {
+            if (meter.getId().getName().startsWith("mbtiles.tile")) {
+                assertThat(meter.getId().getTags()).allMatch(tag -> allowed.contains(tag.getKey()));
+            }
+        }
+    }
+
+    private double lookups(String map, String result) {
+        return registry.get("mbtiles.tile.lookups").tags("map", map, "zoom", "5", "result", result).counter().count();
+    }
+}
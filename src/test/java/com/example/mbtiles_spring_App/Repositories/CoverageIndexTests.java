@@ -0,0 +1,72 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.HttpCacheProperties;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoverageIndexTests {
+
+    private final MapDescriptorFactory factory =
+            new MapDescriptorFactory(new ObjectMapper(), new HttpCacheProperties(new MockEnvironment(), 60));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void routesTileOnlyToMapsCoveringIt() throws Exception {
+        MapDescriptor west = describe("west", 1, SyntheticMbtiles.builder().zooms(0, 4).bounds(-180, -60, -1, 60));
+        MapDescriptor east = describe("east", 1, SyntheticMbtiles.builder().zooms(2, 4).bounds(1, -60, 180, 60));
+        CoverageIndex index = new CoverageIndex();
+        index.add(west);
+        index.add(east);
+
+        TileRange westRange = west.getCoverage().get(4);
+        TileRange eastRange = east.getCoverage().get(4);
+        assertThat(index.candidates(4, westRange.minX(), westRange.minY())).containsExactly(west);
+        assertThat(index.candidates(4, eastRange.maxX(), eastRange.maxY())).containsExactly(east);
+        assertThat(index.candidates(1, 0, 0)).containsExactly(west);
+        assertThat(index.candidates(1, 1, 0)).isEmpty();
+        assertThat(index.candidates(5, 0, 0)).isEmpty();
+    }
+
+    @Test
+    void newerMapIsTriedFirstAndRemovedMapIsForgotten() throws Exception {
+        SyntheticMbtiles world = SyntheticMbtiles.builder().zooms(0, 2);
+        MapDescriptor older = describe("older", 100, world);
+        MapDescriptor newer = describe("newer", 200, world);
+        CoverageIndex index = new CoverageIndex();
+        index.add(older);
+        index.add(newer);
+
+        assertThat(index.candidates(2, 1, 1)).containsExactly(newer, older);
+
+        index.remove("newer");
+        assertThat(index.candidates(2, 1, 1)).containsExactly(older);
+
+        MapDescriptor reloaded = describe("reloaded", 300, world);
+        index.replace("older", reloaded);
+        assertThat(index.candidates(2, 1, 1)).containsExactly(reloaded);
+    }
+
+    @Test
+    void scanReadsRowRangePerZoom() throws Exception {
+        SyntheticMbtiles map = SyntheticMbtiles.builder().zooms(0, 5).bounds(10, 10, 40, 40);
+        Path file = map.write(dir.resolve("scan.mbtiles"));
+
+        assertThat(CoverageIndex.scan(file.toFile())).hasSize(6).containsEntry(5, map.range(5));
+    }
+
+    private MapDescriptor describe(String name, long loadedAt, SyntheticMbtiles map) throws Exception {
+        Path file = map.name(name).write(dir.resolve(name + ".mbtiles"));
+        return factory.build(name, file.toFile(), loadedAt);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.HttpCacheProperties;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.MapDescriptor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MapDescriptorFactoryTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MapDescriptorFactory factory =
+            new MapDescriptorFactory(objectMapper, new HttpCacheProperties(new MockEnvironment(), 60));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void boundsAndFormatComeFromMetadata() throws Exception {
+        File file = SyntheticMbtiles.builder().name("world").zooms(1, 3).bounds(-10, -20, 30, 40)
+                .write(dir.resolve("world.mbtiles")).toFile();
+
+        MapDescriptor descriptor = factory.build("world!1", file, 1);
+
+        assertThat(descriptor.getMediaType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(descriptor.getName()).isEqualTo("world");
+        assertThat(descriptor.getMinZoom()).isEqualTo(1);
+        assertThat(descriptor.getMaxZoom()).isEqualTo(3);
+        assertThat(new double[]{descriptor.getMinLon(), descriptor.getMinLat(), descriptor.getMaxLon(), descriptor.getMaxLat()})
+                .containsExactly(-10, -20, 30, 40);
+        assertThat(info(descriptor).get("tileMimeType").asText()).isEqualTo("png");
+    }
+
+    @Test
+    void rasterMapWithoutBoundsIsDescribed() throws Exception {
+        File file = SyntheticMbtiles.builder().format("jpg").zooms(0, 2).write(dir.resolve("nobounds.mbtiles")).toFile();
+        setMetadata(file, "bounds", null);
+
+        MapDescriptor descriptor = factory.build("nobounds!1", file, 1);
+
+        assertThat(descriptor.getMediaType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(descriptor.getContentEncoding()).isNull();
+        assertThat(new double[]{descriptor.getMinLon(), descriptor.getMinLat(), descriptor.getMaxLon(), descriptor.getMaxLat()})
+                .containsOnly(0);
+        assertThat(descriptor.getCoverage()).containsOnlyKeys(0, 1, 2);
+    }
+
+    @Test
+    void jpegSpellingAndMalformedBoundsAreTolerated() throws Exception {
+        File file = SyntheticMbtiles.builder().zooms(0, 1).write(dir.resolve("odd.mbtiles")).toFile();
+        setMetadata(file, "format", "JPEG");
+        setMetadata(file, "bounds", "west,south");
+
+        MapDescriptor descriptor = factory.build("odd!1", file, 1);
+
+        assertThat(descriptor.getMediaType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(info(descriptor).get("tileMimeType").asText()).isEqualTo("jpg");
+        assertThat(descriptor.getMinLon()).isZero();
+        assertThat(descriptor.getMaxLat()).isZero();
+    }
+
+    @Test
+    void gzippedVectorMapIsDetectedWithoutCompressionKey() throws Exception {
+        File file = SyntheticMbtiles.builder().format("pbf").gzip(true).zooms(0, 1).write(dir.resolve("vector.mbtiles")).toFile();
+
+        MapDescriptor descriptor = factory.build("vector!1", file, 1);
+
+        assertThat(descriptor.getMediaType()).isEqualTo(MediaType.parseMediaType("application/x-protobuf"));
+        assertThat(descriptor.isGzipEncoded()).isTrue();
+    }
+
+    private JsonNode info(MapDescriptor descriptor) throws Exception {
+        return objectMapper.readTree(descriptor.getInfoJson());
+    }
+
+    private static void setMetadata(File file, String name, String value) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM metadata WHERE name = ?");
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO metadata VALUES (?, ?)")) {
+            delete.setString(1, name);
+            delete.executeUpdate();
+            if (value != null) {
+                insert.setString(1, name);
+                insert.setString(2, value);
+                insert.executeUpdate();
+            }
+        }
+    }
+}
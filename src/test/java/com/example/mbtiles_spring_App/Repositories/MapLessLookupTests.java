@@ -0,0 +1,67 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.startup.preload-metadata=false"
+})
+class MapLessLookupTests {
+
+    private static final SyntheticMbtiles LOW = SyntheticMbtiles.builder().name("low").zooms(0, 2);
+    private static final SyntheticMbtiles HIGH = SyntheticMbtiles.builder().name("high").zooms(5, 6).bounds(10, 10, 20, 20);
+
+    @Autowired
+    private MbtilesRepository repository;
+
+    @MockitoSpyBean
+    private MapDescriptorFactory descriptorFactory;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-mapless");
+        LOW.write(dir.resolve("low.mbtiles"));
+        HIGH.write(dir.resolve("high.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void requestThreadNeverDescribesMaps() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return invocation.callRealMethod();
+        }).when(descriptorFactory).build(anyString(), any(), anyLong());
+        TileRange range = LOW.range(1);
+
+        // Первый запрос не ждёт открытия карт и ищет только среди уже описанных
+        repository.getMbtiles(1, range.minX(), range.minY());
+
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> repository.getMbtiles(1, range.minX(), range.minY()).isPresent());
+        assertThat(threads).hasSize(2).allMatch(name -> name.startsWith("mbtiles-startup"));
+        assertThat(repository.getMbtiles(6, 0, 0)).isEmpty();
+        assertThat(threads).hasSize(2);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MapRegistryTests {
+
+    private final MapRegistry registry = new MapRegistry();
+
+    @Test
+    void logicalNameFollowsNewestVersion() {
+        MapHandle older = handle("roads", 100);
+        MapHandle newer = handle("roads", 200);
+        registry.add(newer);
+        registry.add(older);
+
+        assertThat(registry.resolve("roads")).isSameAs(newer);
+        assertThat(registry.resolve("roads!100")).isSameAs(older);
+        assertThat(registry.history("roads")).containsExactly(newer, older);
+        assertThat(registry.add(handle("roads", 200))).isFalse();
+    }
+
+    @Test
+    void promotePinsOlderVersionUntilItIsRemoved() {
+        MapHandle older = handle("roads", 100);
+        MapHandle newer = handle("roads", 200);
+        registry.add(older);
+        registry.add(newer);
+
+        assertThat(registry.promote("roads!100")).isTrue();
+        assertThat(registry.resolve("roads")).isSameAs(older);
+        assertThat(registry.isCurrent(older)).isTrue();
+        assertThat(registry.promote("roads!300")).isFalse();
+
+        registry.remove(older);
+        assertThat(registry.resolve("roads")).isSameAs(newer);
+        assertThat(registry.resolve("roads!100")).isNull();
+    }
+
+    @Test
+    void removingLastVersionDropsAlias() {
+        MapHandle only = handle("roads", 100);
+        registry.add(only);
+        registry.add(handle("water", 100));
+
+        assertThat(registry.remove(only)).isTrue();
+        assertThat(registry.remove(only)).isFalse();
+
+        assertThat(registry.resolve("roads")).isNull();
+        assertThat(registry.history("roads")).isEmpty();
+        assertThat(registry.aliases()).containsOnlyKeys("water");
+    }
+
+    @Test
+    void plainNameWithoutVersionIsItsOwnAlias() {
+        MapHandle legacy = new MapHandle("legacy", new File("legacy.mbtiles"), 0, drained -> {
+        });
+        registry.add(legacy);
+
+        assertThat(MapRegistry.logicalName("legacy")).isEqualTo("legacy");
+        assertThat(MapRegistry.logicalName("roads!200")).isEqualTo("roads");
+        assertThat(registry.resolve("legacy")).isSameAs(legacy);
+    }
+
+    private static MapHandle handle(String logicalName, long loadedAt) {
+        String mapName = logicalName + "!" + loadedAt;
+        return new MapHandle(mapName, new File(mapName + ".mbtiles"), loadedAt, drained -> {
+        });
+    }
+}
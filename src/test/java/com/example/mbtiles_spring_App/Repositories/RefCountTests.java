@@ -0,0 +1,87 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefCountTests {
+
+    @Test
+    void retireWithoutReadersDrainsAtOnce() {
+        AtomicInteger drained = new AtomicInteger();
+        RefCount refs = new RefCount(drained::incrementAndGet);
+
+        refs.retire();
+        refs.retire();
+
+        assertThat(drained).hasValue(1);
+        assertThat(refs.retain()).isFalse();
+    }
+
+    @Test
+    void drainWaitsForLastInFlightRead() {
+        AtomicInteger drained = new AtomicInteger();
+        RefCount refs = new RefCount(drained::incrementAndGet);
+        assertThat(refs.retain()).isTrue();
+        assertThat(refs.retain()).isTrue();
+
+        refs.retire();
+        assertThat(refs.inFlight()).isEqualTo(2);
+        refs.release();
+        assertThat(drained).hasValue(0);
+        refs.release();
+
+        assertThat(drained).hasValue(1);
+        assertThat(refs.inFlight()).isZero();
+        assertThat(refs.retain()).isFalse();
+    }
+
+    @Test
+    void concurrentReadersDrainExactlyOnceAfterRetire() throws Exception {
+        AtomicInteger drained = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger activeAtDrain = new AtomicInteger(-1);
+        RefCount refs = new RefCount(() -> {
+            activeAtDrain.set(active.get());
+            drained.incrementAndGet();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch started = new CountDownLatch(8);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                readers.add(executor.submit(() -> {
+                    started.countDown();
+                    int reads = 0;
+                    // Репозиторий убирает карту из реестра до вывода из оборота, поэтому новые чтения после этого не начинаются
+                    while (!refs.isRetired() && refs.retain()) {
+                        active.incrementAndGet();
+                        reads++;
+                        active.decrementAndGet();
+                        refs.release();
+                    }
+                    return reads;
+                }));
+            }
+            started.await();
+            Thread.sleep(20);
+            refs.retire();
+            for (Future<Integer> reader : readers) {
+                assertThat(reader.get()).isPositive();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(drained).hasValue(1);
+        assertThat(activeAtDrain).hasValue(0);
+    }
+}
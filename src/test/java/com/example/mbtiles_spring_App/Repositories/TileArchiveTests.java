@@ -0,0 +1,146 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileArchiveTests {
+
+    private static final SyntheticMbtiles SPARSE = SyntheticMbtiles.builder().zooms(0, 6).tileSize(64).coverage(0.5).seed(21);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void hilbertIdRoundTripsAndCoversEachZoomContiguously() {
+        int[] zxy = new int[3];
+        for (int z = 0; z <= 8; z++) {
+            long base = ((1L << (2 * z)) - 1) / 3;
+            Set<Long> ids = new HashSet<>();
+            for (int x = 0; x < 1 << z; x++) {
+                for (int y = 0; y < 1 << z; y++) {
+                    long id = TileArchive.tileId(z, x, y);
+                    assertThat(id).isBetween(base, base + (1L << (2 * z)) - 1);
+                    ids.add(id);
+                    TileArchive.coordinates(id, zxy);
+                    assertThat(zxy).containsExactly(z, x, y);
+                }
+            }
+            assertThat(ids).hasSize(1 << (2 * z));
+        }
+        TileArchive.coordinates(TileArchive.tileId(30, (1 << 30) - 1, 12345), zxy);
+        assertThat(zxy).containsExactly(30, (1 << 30) - 1, 12345);
+    }
+
+    @Test
+    void consecutiveIdsAreNeighbouringTiles() {
+        int[] previous = new int[3];
+        int[] current = new int[3];
+        int z = 6;
+        long base = ((1L << (2 * z)) - 1) / 3;
+        TileArchive.coordinates(base, previous);
+        for (long id = base + 1; id < base + (1L << (2 * z)); id++) {
+            TileArchive.coordinates(id, current);
+            assertThat(Math.abs(current[1] - previous[1]) + Math.abs(current[2] - previous[2])).isEqualTo(1);
+            System.arraycopy(current, 0, previous, 0, 3);
+        }
+    }
+
+    @Test
+    void archiveAnswersLikeTheFile() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+
+        TileArchive archive = TileArchive.compile(file);
+
+        for (int[] tile : SPARSE.sample(200, 3)) {
+            StoredTile stored = archive.readTile(tile[0], tile[1], tile[2]);
+            assertThat(stored).isNotNull();
+            assertThat(bytes(stored.data())).isEqualTo(SPARSE.tile(tile[0], tile[1], tile[2]));
+        }
+        for (int x = 0; x < 1 << 6; x++) {
+            if (!SPARSE.contains(6, x, 0)) {
+                assertThat(archive.readTile(6, x, 0)).isNull();
+            }
+        }
+        assertThat(archive.readTile(7, 0, 0)).isNull();
+        assertThat(archive.readTile(2, 4, 0)).isNull();
+        assertThat(archive.readTile(-1, 0, 0)).isNull();
+    }
+
+    @Test
+    void identicalTilesAreWrittenOnce() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+        byte[] sea = {1, 2, 3, 4};
+        List<int[]> tiles = SPARSE.sample(10, 5);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE tiles SET tile_data = ? WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?")) {
+            for (int[] tile : tiles) {
+                update.setBytes(1, sea);
+                update.setInt(2, tile[0]);
+                update.setInt(3, tile[1]);
+                update.setInt(4, tile[2]);
+                update.executeUpdate();
+            }
+        }
+
+        TileArchive archive = TileArchive.compile(file);
+
+        Set<String> offsets = new HashSet<>();
+        for (int[] tile : tiles) {
+            StoredTile stored = archive.readTile(tile[0], tile[1], tile[2]);
+            assertThat(bytes(stored.data())).isEqualTo(sea);
+            offsets.add(stored.tileId());
+        }
+        assertThat(offsets).hasSize(1);
+        assertThat(archive.getBlobs()).isEqualTo(distinctContents(file)).isLessThan(archive.getEntries());
+    }
+
+    @Test
+    void sidecarIsReusedUntilMapFileChanges() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+        TileArchive compiled = TileArchive.compile(file);
+
+        TileArchive opened = TileArchive.openIfFresh(file);
+        assertThat(opened).isNotNull();
+        assertThat(opened.getEntries()).isEqualTo(compiled.getEntries());
+
+        assertThat(file.setLastModified(file.lastModified() - 60_000)).isTrue();
+        assertThat(TileArchive.openIfFresh(file)).isNull();
+
+        TileArchive.deleteSidecar(file);
+        assertThat(TileArchive.openIfFresh(file)).isNull();
+    }
+
+    private static long distinctContents(File file) throws Exception {
+        Set<ByteBuffer> contents = new HashSet<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT tile_data FROM tiles")) {
+            while (rs.next()) {
+                contents.add(ByteBuffer.wrap(rs.getBytes(1)));
+            }
+        }
+        return contents.size();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
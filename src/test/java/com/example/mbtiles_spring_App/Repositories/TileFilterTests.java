@@ -0,0 +1,91 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileFilterTests {
+
+    private static final SyntheticMbtiles SPARSE = SyntheticMbtiles.builder().zooms(0, 7).tileSize(64).coverage(0.3).seed(11);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exactFilterAnswersLikeTheFile() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+
+        TileFilter filter = TileFilter.buildAndSave(file, CoverageIndex.scan(file), 0.01, Long.MAX_VALUE);
+
+        forEachCoordinate(7, (x, y) -> assertThat(filter.mightContain(7, x, y)).isEqualTo(SPARSE.contains(7, x, y)));
+        assertThat(filter.mightContain(8, 0, 0)).isFalse();
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+
+        TileFilter filter = TileFilter.buildAndSave(file, CoverageIndex.scan(file), 0.01, 0);
+
+        int[] falsePositives = new int[1];
+        int[] absent = new int[1];
+        forEachCoordinate(7, (x, y) -> {
+            if (SPARSE.contains(7, x, y)) {
+                assertThat(filter.mightContain(7, x, y)).isTrue();
+            } else {
+                absent[0]++;
+                if (filter.mightContain(7, x, y)) falsePositives[0]++;
+            }
+        });
+        assertThat((double) falsePositives[0] / absent[0]).isLessThan(0.05);
+    }
+
+    @Test
+    void sidecarIsReusedUntilMapFileChanges() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+        TileFilter.buildAndSave(file, CoverageIndex.scan(file), 0.01, Long.MAX_VALUE);
+
+        TileFilter loaded = TileFilter.load(file);
+        assertThat(loaded).isNotNull();
+        forEachCoordinate(7, (x, y) -> assertThat(loaded.mightContain(7, x, y)).isEqualTo(SPARSE.contains(7, x, y)));
+
+        // Та же длина, другое время изменения - фильтр построен для другой версии файла
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 60_000));
+        assertThat(TileFilter.load(file)).isNull();
+
+        SyntheticMbtiles.builder().zooms(0, 7).tileSize(64).coverage(0.6).seed(12).write(file.toPath());
+        assertThat(TileFilter.load(file)).isNull();
+    }
+
+    @Test
+    void deletedOrCorruptSidecarIsIgnored() throws Exception {
+        File file = SPARSE.write(dir.resolve("sparse.mbtiles")).toFile();
+        TileFilter.buildAndSave(file, CoverageIndex.scan(file), 0.01, Long.MAX_VALUE);
+        Path sidecar = dir.resolve("sparse.mbtiles.tilefilter");
+
+        Files.write(sidecar, new byte[]{1, 2, 3});
+        assertThat(TileFilter.load(file)).isNull();
+
+        TileFilter.deleteSidecar(file);
+        assertThat(sidecar).doesNotExist();
+        assertThat(TileFilter.load(file)).isNull();
+    }
+
+    private static void forEachCoordinate(int z, BiConsumer<Integer, Integer> check) {
+        TileRange range = SPARSE.range(z);
+        for (int x = range.minX(); x <= range.maxX(); x++) {
+            for (int y = range.minY(); y <= range.maxY(); y++) {
+                check.accept(x, y);
+            }
+        }
+    }
+}
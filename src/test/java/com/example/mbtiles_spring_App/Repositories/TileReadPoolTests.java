@@ -0,0 +1,152 @@
+package com.example.mbtiles_spring_App.Repositories;
+
+import com.example.mbtiles_spring_App.Configuration.SqliteReadProperties;
+import com.example.mbtiles_spring_App.Exceptions.ReadRejectedException;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TileReadPoolTests {
+
+    private static final SyntheticMbtiles MAP = SyntheticMbtiles.builder().zooms(0, 4).tileSize(256).coverage(0.6).seed(4);
+    private static final int[] TILE = MAP.sample(1, 1).get(0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsMatchTheFile() throws Exception {
+        TileReadPool pool = new TileReadPool(file(), properties(2, 0, 1000), false, null);
+        try {
+            for (int[] tile : MAP.sample(50, 7)) {
+                StoredTile stored = pool.readTile(tile[0], tile[1], tile[2]);
+                assertThat(bytes(stored.data())).isEqualTo(MAP.tile(tile[0], tile[1], tile[2]));
+                assertThat(stored.tileId()).isNull();
+            }
+            assertThat(pool.readTile(5, 0, 0)).isNull();
+
+            TileRange range = MAP.range(4);
+            List<ScannedTile> scanned = pool.scan(4, range);
+            assertThat(scanned).isNotEmpty().allMatch(tile -> MAP.contains(4, tile.x(), tile.y()));
+            assertThat(pool.isIdle()).isTrue();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void readsBeyondPoolAndQueueAreRejectedAndConnectionsComeBack() throws Exception {
+        // Нет общих разрешений: оба соединения заняты чтениями, которые ждут разрешения до таймаута
+        Semaphore permits = new Semaphore(0);
+        TileReadPool pool = new TileReadPool(file(), properties(2, 0, 1000), false, permits);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> read(pool));
+            Future<?> second = executor.submit(() -> read(pool));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (permits.getQueueLength() < 2) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(1);
+            }
+
+            assertThatThrownBy(() -> read(pool))
+                    .isInstanceOf(ReadRejectedException.class)
+                    .hasMessageContaining("Слишком много одновременных чтений")
+                    .satisfies(e -> assertThat(e.getStackTrace()).isEmpty());
+            for (Future<?> read : List.of(first, second)) {
+                assertThatThrownBy(() -> read.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .cause().isInstanceOf(ReadRejectedException.class)
+                        .hasMessageContaining("общий лимит");
+            }
+
+            // Отказавшие чтения вернули соединения и места в очереди
+            assertThat(pool.isIdle()).isTrue();
+            permits.release(2);
+            assertThat(read(pool)).isNotNull();
+            assertThat(read(pool)).isNotNull();
+            assertThat(permits.availablePermits()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    @Test
+    void waitingReadGetsTheReturnedConnection() throws Exception {
+        Semaphore permits = new Semaphore(0);
+        TileReadPool pool = new TileReadPool(file(), properties(1, 1, 5000), false, permits);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<StoredTile> holder = executor.submit(() -> read(pool));
+            while (!permits.hasQueuedThreads()) {
+                Thread.sleep(1);
+            }
+            AtomicReference<Thread> waiting = new AtomicReference<>();
+            Future<StoredTile> waiter = executor.submit(() -> {
+                waiting.set(Thread.currentThread());
+                return read(pool);
+            });
+            while (waiting.get() == null || waiting.get().getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1);
+            }
+            // Соединение одно и место в очереди одно: третий сразу получает отказ
+            assertThatThrownBy(() -> read(pool)).isInstanceOf(ReadRejectedException.class);
+
+            permits.release();
+            assertThat(holder.get(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(waiter.get(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(pool.isIdle()).isTrue();
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    @Test
+    void closedPoolDrainsAfterLastLease() throws Exception {
+        TileReadPool pool = new TileReadPool(file(), properties(1, 0, 1000), false, null);
+        assertThat(pool.retain()).isTrue();
+
+        pool.close();
+        // Начатое чтение дорабатывает до освобождения последней ссылки
+        assertThat(read(pool)).isNotNull();
+        pool.release();
+
+        assertThat(pool.retain()).isFalse();
+    }
+
+    private static StoredTile read(TileReadPool pool) throws Exception {
+        return pool.readTile(TILE[0], TILE[1], TILE[2]);
+    }
+
+    private File file() throws Exception {
+        return MAP.write(dir.resolve("pool.mbtiles")).toFile();
+    }
+
+    private static SqliteReadProperties properties(int poolSize, int maxWaiting, long acquireTimeoutMs) {
+        return new SqliteReadProperties(poolSize, 0, -2000, true, acquireTimeoutMs, maxWaiting, 0);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Models.TileRange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.composite.max-layers=2"
+})
+@AutoConfigureMockMvc
+class CompositeServiceTests {
+
+    private static final int SIZE = 64;
+    private static final SyntheticMbtiles BASE = SyntheticMbtiles.builder().name("base").zooms(0, 2).images(SIZE).seed(1);
+    private static final SyntheticMbtiles TOP = SyntheticMbtiles.builder().name("top").zooms(0, 2).images(SIZE).seed(2);
+    // Покрывает только восточное полушарие, на западе наложение состоит из одного слоя
+    private static final SyntheticMbtiles EAST = SyntheticMbtiles.builder().name("east").zooms(0, 2).images(SIZE).seed(3)
+            .bounds(1, -80, 179, 80);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-composite");
+        for (SyntheticMbtiles map : new SyntheticMbtiles[]{BASE, TOP, EAST}) {
+            map.write(dir.resolve(map.getName() + ".mbtiles"));
+        }
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void lastLayerIsDrawnOnTop() throws Exception {
+        assertThat(pixels(composite("base,top", 2, 1, 1))).isEqualTo(pixels(TOP.tile(2, 1, 1)));
+        assertThat(pixels(composite("top,base", 2, 1, 1))).isEqualTo(pixels(BASE.tile(2, 1, 1)));
+    }
+
+    @Test
+    void layerWithoutTileIsSkipped() throws Exception {
+        TileRange east = EAST.range(2);
+        int west = east.minX() - 1;
+
+        assertThat(pixels(composite("base,east", 2, west, 1))).isEqualTo(pixels(BASE.tile(2, west, 1)));
+        assertThat(pixels(composite("base,east", 2, east.minX(), 1))).isEqualTo(pixels(EAST.tile(2, east.minX(), 1)));
+    }
+
+    @Test
+    void tooManyOrUnknownLayersAreRejected() throws Exception {
+        mockMvc.perform(get("/api/v1/mbtiles/composite/0/0/0").param("layers", "base,top,east"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/mbtiles/composite/0/0/0").param("layers", "base,missing"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private byte[] composite(String layers, int z, int x, int y) throws Exception {
+        return mockMvc.perform(get("/api/v1/mbtiles/composite/" + z + "/" + x + "/" + y).param("layers", layers))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private static int[] pixels(byte[] png) throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        int[] rgb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] |= 0xff000000;
+        }
+        return rgb;
+    }
+}
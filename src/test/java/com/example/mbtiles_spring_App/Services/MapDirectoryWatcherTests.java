@@ -0,0 +1,111 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=true",
+        "mbtiles.watch.debounce-ms=300",
+        "mbtiles.prewarm.enabled=false"
+})
+class MapDirectoryWatcherTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private static Path dir;
+    private static Path scratch;
+
+    @Autowired
+    private MbtilesRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        dir = Files.createTempDirectory("mbtiles-watch");
+        scratch = Files.createTempDirectory("mbtiles-watch-scratch");
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void addedReplacedAndDeletedFilesAreFollowed() throws Exception {
+        Path file = dir.resolve("watched.mbtiles");
+        publish(SyntheticMbtiles.builder().name("first").zooms(0, 1), file);
+        String first = await().atMost(TIMEOUT).until(() -> repository.findMapName(file), Optional::isPresent).get();
+        assertThat(first).startsWith("watched!");
+
+        Path replacement = SyntheticMbtiles.builder().name("second").zooms(0, 2).write(scratch.resolve("second.mbtiles"));
+        replacement.toFile().setLastModified(file.toFile().lastModified() + 5000);
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        String second = await().atMost(TIMEOUT)
+                .until(() -> repository.findMapName(file).orElse(first), name -> !name.equals(first));
+        assertThat(repository.exists(first)).isFalse();
+        // Счётчик увеличивается сразу после того, как реестр уже переключился на новую версию
+        await().atMost(TIMEOUT).until(() -> reloads("replaced", "success") == 1);
+
+        Files.delete(file);
+        await().atMost(TIMEOUT).until(() -> repository.findMapName(file).isEmpty());
+        assertThat(repository.exists(second)).isFalse();
+        await().atMost(TIMEOUT).until(() -> reloads("removed", "success") == 1);
+    }
+
+    @Test
+    void fileIsLoadedOnlyAfterWritingStops() throws Exception {
+        Path source = SyntheticMbtiles.builder().name("slow").zooms(0, 3).write(scratch.resolve("slow.mbtiles"));
+        byte[] bytes = Files.readAllBytes(source);
+        Path file = dir.resolve("slow.mbtiles");
+        double failures = reloads("added", "failure");
+
+        // Файл пишется кусками дольше интервала ожидания: пока размер меняется, загрузка откладывается
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int chunk = bytes.length / 8 + 1;
+            for (int offset = 0; offset < bytes.length; offset += chunk) {
+                out.write(bytes, offset, Math.min(chunk, bytes.length - offset));
+                out.flush();
+                Thread.sleep(120);
+                assertThat(repository.findMapName(file)).isEmpty();
+            }
+        }
+
+        await().atMost(TIMEOUT).until(() -> repository.findMapName(file).isPresent());
+        assertThat(reloads("added", "failure")).isEqualTo(failures);
+    }
+
+    @Test
+    void brokenFileIsRecordedAsFailure() throws Exception {
+        double failures = reloads("added", "failure");
+
+        Files.write(dir.resolve("broken.mbtiles"), new byte[]{1, 2, 3});
+
+        await().atMost(TIMEOUT).until(() -> reloads("added", "failure") > failures);
+        assertThat(repository.findMapName(dir.resolve("broken.mbtiles"))).isEmpty();
+    }
+
+    private static void publish(SyntheticMbtiles map, Path target) throws Exception {
+        Path written = map.write(scratch.resolve(target.getFileName()));
+        Files.move(written, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private double reloads(String action, String result) {
+        Counter counter = meterRegistry.find("mbtiles.map.reloads").tag("action", action).tag("result", result).counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.overzoom.enabled=true",
+        "mbtiles.overzoom.max-levels=2",
+        "mbtiles.overzoom.interpolation=nearest"
+})
+@AutoConfigureMockMvc
+class OverzoomServiceTests {
+
+    private static final int SIZE = 256;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        Path dir = Files.createTempDirectory("mbtiles-overzoom");
+        Path file = SyntheticMbtiles.builder().name("quads").zooms(0, 0).images(SIZE).write(dir.resolve("quads.mbtiles"));
+        // Единственный тайл z0 заменяется четырьмя цветными четвертями, чтобы было видно, какая часть вырезана
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             PreparedStatement update = connection.prepareStatement("UPDATE tiles SET tile_data = ? WHERE zoom_level = 0")) {
+            update.setBytes(1, quadrants());
+            update.executeUpdate();
+        }
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void childOfTopRowInTmsIsCutFromTopOfParentImage() throws Exception {
+        assertThat(centerColor(1, 0, 1)).isEqualTo(Color.RED);
+        assertThat(centerColor(1, 1, 1)).isEqualTo(Color.GREEN);
+        assertThat(centerColor(1, 0, 0)).isEqualTo(Color.BLUE);
+        assertThat(centerColor(1, 1, 0)).isEqualTo(Color.YELLOW);
+    }
+
+    @Test
+    void deeperChildIsCutFromNearestAncestor() throws Exception {
+        assertThat(centerColor(2, 3, 0)).isEqualTo(Color.YELLOW);
+        assertThat(centerColor(2, 0, 3)).isEqualTo(Color.RED);
+    }
+
+    @Test
+    void levelsBeyondLimitAreNotSynthesized() throws Exception {
+        mockMvc.perform(get("/api/v1/mbtiles/3/0/0").param("mapName", "quads"))
+                .andExpect(status().isNoContent());
+    }
+
+    private Color centerColor(int z, int x, int y) throws Exception {
+        byte[] body = mockMvc.perform(get("/api/v1/mbtiles/" + z + "/" + x + "/" + y).param("mapName", "quads"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(body));
+        assertThat(image.getWidth()).isEqualTo(SIZE);
+        return new Color(image.getRGB(SIZE / 2, SIZE / 2));
+    }
+
+    private static byte[] quadrants() throws Exception {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            int half = SIZE / 2;
+            graphics.setColor(Color.RED);
+            graphics.fillRect(0, 0, half, half);
+            graphics.setColor(Color.GREEN);
+            graphics.fillRect(half, 0, half, half);
+            graphics.setColor(Color.BLUE);
+            graphics.fillRect(0, half, half, half);
+            graphics.setColor(Color.YELLOW);
+            graphics.fillRect(half, half, half, half);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.mbtiles_spring_App.Services;
+
+import com.example.mbtiles_spring_App.DTO.PrewarmStatusResponse;
+import com.example.mbtiles_spring_App.Fixtures.SyntheticMbtiles;
+import com.example.mbtiles_spring_App.Repositories.MbtilesRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {
+        "mbtiles.watch.enabled=false",
+        "mbtiles.prewarm.enabled=false",
+        "mbtiles.prewarm.min-zoom=0",
+        "mbtiles.prewarm.max-zoom=10",
+        "mbtiles.prewarm.parallelism=2",
+        "mbtiles.prewarm.chunk-tiles=16",
+        "mbtiles.prewarm.max-megabytes=1"
+})
+class PrewarmServiceTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final long MB = 1048576;
+    private static final int HEAVY_TILE = 64 * 1024;
+
+    private static Path dir;
+
+    @Autowired
+    private PrewarmService prewarmService;
+
+    @Autowired
+    private MbtilesRepository repository;
+
+    @DynamicPropertySource
+    static void maps(DynamicPropertyRegistry registry) throws Exception {
+        dir = Files.createTempDirectory("mbtiles-prewarm");
+        SyntheticMbtiles.builder().name("heavy").zooms(0, 4).tileSize(HEAVY_TILE).write(dir.resolve("heavy.mbtiles"));
+        // Редкие мелкие тайлы до z10: лимит объёма не достигается, а перебор границ занимает секунды
+        SyntheticMbtiles.builder().name("sparse").zooms(0, 10).tileSize(64).coverage(0.001).write(dir.resolve("sparse.mbtiles"));
+        registry.add("mbtiles.map.storage.dir", dir::toString);
+    }
+
+    @Test
+    void prewarmStopsAtMaxMegabytes() {
+        String mapName = repository.findMapName(dir.resolve("heavy.mbtiles")).orElseThrow();
+        prewarmService.schedule(mapName);
+
+        PrewarmStatusResponse status = await().atMost(TIMEOUT)
+                .until(() -> prewarmService.getStatus(mapName).orElseThrow(), PrewarmServiceTests::isFinished);
+
+        assertThat(status.getState()).isEqualTo("LIMITED");
+        // Лимит проверяется перед каждой порцией, поэтому превышение не больше одной порции
+        assertThat(status.getBytes()).isGreaterThanOrEqualTo(MB).isLessThan(MB + 16L * HEAVY_TILE);
+        assertThat(status.getTilesScanned()).isLessThan(status.getTilesTotal());
+    }
+
+    @Test
+    void prewarmIsCancelledWhenTheMapIsUnloaded() {
+        Path file = dir.resolve("sparse.mbtiles");
+        String mapName = repository.findMapName(file).orElseThrow();
+        prewarmService.schedule(mapName);
+        await().atMost(TIMEOUT).pollInterval(Duration.ofMillis(5))
+                .until(() -> prewarmService.getStatus(mapName).orElseThrow().getTilesScanned() > 0);
+
+        assertThat(repository.unload(file)).contains(mapName);
+
+        PrewarmStatusResponse status = await().atMost(TIMEOUT)
+                .until(() -> prewarmService.getStatus(mapName).orElseThrow(), PrewarmServiceTests::isFinished);
+        assertThat(status.getState()).isEqualTo("CANCELLED");
+        assertThat(status.getError()).isEqualTo("Карта выгружена");
+        assertThat(status.getTilesScanned()).isLessThan(status.getTilesTotal());
+    }
+
+    private static boolean isFinished(PrewarmStatusResponse status) {
+        return !status.getState().equals("QUEUED") && !status.getState().equals("RUNNING");
+    }
+}
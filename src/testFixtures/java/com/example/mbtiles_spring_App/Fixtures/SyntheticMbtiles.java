@@ -0,0 +1,289 @@
+package com.example.mbtiles_spring_App.Fixtures;
+
+import com.example.mbtiles_spring_App.Models.TileRange;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+public final class SyntheticMbtiles {
+
+    public enum SizeDistribution {
+        FIXED, UNIFORM, LOG_NORMAL
+    }
+
+    private static final double MAX_LAT = 85.0511;
+
+    private String name = "synthetic";
+    private String format = "png";
+    private int minZoom = 0;
+    private int maxZoom = 6;
+    private int tileSize = 4096;
+    private SizeDistribution distribution = SizeDistribution.FIXED;
+    private double coverage = 1.0;
+    private double minLon = -180.0;
+    private double minLat = -MAX_LAT;
+    private double maxLon = 180.0;
+    private double maxLat = MAX_LAT;
+    private int imageSize = 0;
+    private boolean gzip = false;
+    private long seed = 42L;
+
+    private SyntheticMbtiles() {
+    }
+
+    public static SyntheticMbtiles builder() {
+        return new SyntheticMbtiles();
+    }
+
+    public static void write(Path file, int maxZoom, int tileSize, long seed) throws SQLException {
+        builder().maxZoom(maxZoom).tileSize(tileSize).seed(seed).write(file);
+    }
+
+    public static List<SyntheticMbtiles> strips(int mapCount, int maxZoom, int tileSize, double coverage, long seed) {
+        List<SyntheticMbtiles> maps = new ArrayList<>(mapCount);
+        double width = 360.0 / mapCount;
+        for (int i = 0; i < mapCount; i++) {
+            maps.add(builder()
+                    .name("strip" + i)
+                    .zooms(0, maxZoom)
+                    .tileSize(tileSize)
+                    .sizeDistribution(SizeDistribution.LOG_NORMAL)
+                    .coverage(coverage)
+                    .bounds(-180.0 + i * width, -MAX_LAT, -180.0 + (i + 1) * width, MAX_LAT)
+                    .seed(seed + i));
+        }
+        return maps;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SyntheticMbtiles name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public SyntheticMbtiles format(String format) {
+        this.format = format;
+        return this;
+    }
+
+    public SyntheticMbtiles zooms(int minZoom, int maxZoom) {
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        return this;
+    }
+
+    public SyntheticMbtiles maxZoom(int maxZoom) {
+        this.maxZoom = maxZoom;
+        return this;
+    }
+
+    public SyntheticMbtiles tileSize(int tileSize) {
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    public SyntheticMbtiles sizeDistribution(SizeDistribution distribution) {
+        this.distribution = distribution;
+        return this;
+    }
+
+    public SyntheticMbtiles coverage(double coverage) {
+        this.coverage = coverage;
+        return this;
+    }
+
+    public SyntheticMbtiles bounds(double minLon, double minLat, double maxLon, double maxLat) {
+        this.minLon = minLon;
+        this.minLat = minLat;
+        this.maxLon = maxLon;
+        this.maxLat = maxLat;
+        return this;
+    }
+
+    public SyntheticMbtiles images(int imageSize) {
+        this.imageSize = imageSize;
+        return this;
+    }
+
+    public SyntheticMbtiles gzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    public SyntheticMbtiles seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public TileRange range(int z) {
+        return TileRange.forBounds(z, minLon, minLat, maxLon, maxLat);
+    }
+
+    public boolean contains(int z, int x, int y) {
+        if (z < minZoom || z > maxZoom || !range(z).contains(x, y)) {
+            return false;
+        }
+        return coverage >= 1.0 || mix(seed ^ 0x5deece66dL, z, x, y) >>> 11 < coverage * (1L << 53);
+    }
+
+    public List<int[]> sample(int count, long sampleSeed) {
+        SplittableRandom random = new SplittableRandom(sampleSeed);
+        List<int[]> result = new ArrayList<>(count);
+        int attempts = 0;
+        while (result.size() < count && attempts++ < count * 100) {
+            int z = minZoom + random.nextInt(maxZoom - minZoom + 1);
+            TileRange range = range(z);
+            int x = range.minX() + random.nextInt(range.maxX() - range.minX() + 1);
+            int y = range.minY() + random.nextInt(range.maxY() - range.minY() + 1);
+            if (contains(z, x, y)) {
+                result.add(new int[]{z, x, y});
+            }
+        }
+        return result;
+    }
+
+    public Path write(Path file) throws SQLException {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath())) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE metadata (name TEXT, value TEXT)");
+                statement.execute("CREATE TABLE tiles (zoom_level INTEGER, tile_column INTEGER, tile_row INTEGER, tile_data BLOB)");
+                statement.execute("CREATE UNIQUE INDEX tile_index ON tiles (zoom_level, tile_column, tile_row)");
+            }
+            try (PreparedStatement metadata = connection.prepareStatement("INSERT INTO metadata VALUES (?, ?)")) {
+                String[][] entries = {
+                        {"name", name},
+                        {"format", format},
+                        {"bounds", minLon + "," + minLat + "," + maxLon + "," + maxLat},
+                        {"minzoom", String.valueOf(minZoom)},
+                        {"maxzoom", String.valueOf(maxZoom)}
+                };
+                for (String[] entry : entries) {
+                    metadata.setString(1, entry[0]);
+                    metadata.setString(2, entry[1]);
+                    metadata.addBatch();
+                }
+                metadata.executeBatch();
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO tiles VALUES (?, ?, ?, ?)")) {
+                for (int z = minZoom; z <= maxZoom; z++) {
+                    TileRange range = range(z);
+                    for (int x = range.minX(); x <= range.maxX(); x++) {
+                        for (int y = range.minY(); y <= range.maxY(); y++) {
+                            if (!contains(z, x, y)) continue;
+                            insert.setInt(1, z);
+                            insert.setInt(2, x);
+                            insert.setInt(3, y);
+                            insert.setBytes(4, stored(z, x, y));
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                }
+            }
+            connection.commit();
+        }
+        return file;
+    }
+
+    /** Содержимое тайла до сжатия: с ним сравнивают ответы, распакованные сервером. */
+    public byte[] tile(int z, int x, int y) {
+        SplittableRandom random = new SplittableRandom(mix(seed, z, x, y));
+        if (imageSize > 0) {
+            return image(random);
+        }
+        byte[] data = new byte[size(random)];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private byte[] stored(int z, int x, int y) {
+        byte[] data = tile(z, x, y);
+        if (!gzip) {
+            return data;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private int size(SplittableRandom random) {
+        return switch (distribution) {
+            case FIXED -> tileSize;
+            case UNIFORM -> tileSize / 2 + random.nextInt(tileSize + 1);
+            case LOG_NORMAL -> {
+                double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+                yield (int) Math.min(tileSize * 16L, Math.max(64, Math.round(tileSize * Math.exp(0.6 * gaussian))));
+            }
+        };
+    }
+
+    private byte[] image(SplittableRandom random) {
+        BufferedImage image = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            graphics.fillRect(0, 0, imageSize, imageSize);
+            for (int i = 0; i < 8; i++) {
+                graphics.setColor(new Color(random.nextInt(0x1000000)));
+                graphics.fillRect(random.nextInt(imageSize), random.nextInt(imageSize),
+                        1 + random.nextInt(imageSize / 2), 1 + random.nextInt(imageSize / 2));
+            }
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, format.equals("jpg") ? "jpeg" : format, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static long mix(long seed, int z, int x, int y) {
+        long h = seed ^ ((long) z << 58) ^ ((long) x << 29) ^ y;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}